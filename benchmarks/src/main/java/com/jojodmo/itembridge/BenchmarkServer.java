@@ -0,0 +1,155 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.UnsafeValues;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Just enough of a Bukkit server for ItemBridge to run outside of Minecraft. Every stand-in is a dynamic proxy that
+ * answers the handful of methods ItemBridge uses, and returns an empty value for everything else (including when a
+ * stubbed method returns {@code null})
+ */
+class BenchmarkServer{
+
+    private static final Logger LOGGER = Logger.getLogger("ItemBridgeBenchmark");
+    private static final UUID WORLD_ID = UUID.randomUUID();
+    private static Plugin plugin;
+    private static World world;
+
+    static {
+        LOGGER.setLevel(Level.WARNING);
+    }
+
+    /**
+     * Install the stand-in server and register the Minecraft bridge. Safe to call more than once
+     */
+    static synchronized Plugin install(){
+        if(plugin != null){return plugin;}
+
+        Map<String, Function<Object[], Object>> unsafe = new HashMap<>();
+        unsafe.put("getDataVersion", args -> 2580);
+        unsafe.put("getMaterial", args -> Material.getMaterial((String) args[0]));
+        UnsafeValues unsafeValues = stub(UnsafeValues.class, unsafe);
+
+        // ItemStack.hasItemMeta, isSimilar and serialize compare metas through the item factory. Benchmark items never have meta
+        Map<String, Function<Object[], Object>> factory = new HashMap<>();
+        factory.put("equals", args -> args.length == 2 ? Objects.equals(args[0], args[1]) : null);
+        ItemFactory itemFactory = stub(ItemFactory.class, factory);
+
+        Map<String, Function<Object[], Object>> server = new HashMap<>();
+        server.put("getLogger", args -> LOGGER);
+        server.put("getItemFactory", args -> itemFactory);
+        server.put("getUnsafe", args -> unsafeValues);
+        server.put("isPrimaryThread", args -> true);
+        Bukkit.setServer(stub(Server.class, server));
+
+        Map<String, Function<Object[], Object>> block = new HashMap<>();
+        block.put("getType", args -> Material.STONE);
+        Block stone = stub(Block.class, block);
+
+        Map<String, Function<Object[], Object>> w = new HashMap<>();
+        w.put("getUID", args -> WORLD_ID);
+        w.put("getName", args -> "world");
+        w.put("getBlockAt", args -> stone);
+        // the block cache only keeps entries for loaded chunks
+        w.put("isChunkLoaded", args -> true);
+        world = stub(World.class, w);
+
+        plugin = createPlugin("ItemBridge", createDataFolder());
+        new MinecraftItemBridge(plugin);
+        return plugin;
+    }
+
+    static World getWorld(){
+        install();
+        return world;
+    }
+
+    static Location location(int x, int y, int z){
+        return new Location(getWorld(), x, y, z);
+    }
+
+    static Plugin createPlugin(String name, File dataFolder){
+        YamlConfiguration config = new YamlConfiguration();
+        Map<String, Function<Object[], Object>> methods = new HashMap<>();
+        methods.put("getName", args -> name);
+        methods.put("getDataFolder", args -> dataFolder);
+        methods.put("getConfig", args -> config);
+        methods.put("getLogger", args -> LOGGER);
+        methods.put("isEnabled", args -> true);
+        return stub(Plugin.class, methods);
+    }
+
+    static File createDataFolder(){
+        try{
+            File folder = Files.createTempDirectory("itembridge-benchmark").toFile();
+            folder.deleteOnExit();
+            return folder;
+        }
+        catch(Exception ex){
+            throw new IllegalStateException("Could not create a data folder for the benchmark", ex);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Map<String, Function<Object[], Object>> methods){
+        InvocationHandler handler = (proxy, method, args) -> {
+            Function<Object[], Object> impl = methods.get(method.getName());
+            Object result = impl == null ? null : impl.apply(args == null ? new Object[0] : args);
+            if(result != null){return result;}
+
+            switch(method.getName()){
+                case "equals": return proxy == args[0];
+                case "hashCode": return System.identityHashCode(proxy);
+                case "toString": return type.getSimpleName() + " stand-in";
+            }
+            return defaultValue(method.getReturnType());
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object defaultValue(Class<?> type){
+        if(type == boolean.class){return false;}
+        if(type == int.class){return 0;}
+        if(type == long.class){return 0L;}
+        if(type == double.class){return 0D;}
+        if(type == float.class){return 0F;}
+        if(type == short.class){return (short) 0;}
+        if(type == byte.class){return (byte) 0;}
+        if(type == char.class){return (char) 0;}
+        if(type == List.class || type == Collection.class){return Collections.emptyList();}
+        if(type == Set.class){return Collections.emptySet();}
+        if(type == Map.class){return Collections.emptyMap();}
+        return null;
+    }
+
+    /**
+     * @return the first {@code count} materials that are items, for listeners to claim
+     */
+    static List<Material> itemMaterials(int count){
+        List<Material> result = new ArrayList<>();
+        for(Material m : Material.values()){
+            if(result.size() >= count){break;}
+            if(!m.isLegacy() && m.isItem() && !m.isAir()){
+                result.add(m);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,56 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block lookups with {@code getBlock}, for a custom block and for a vanilla block, with and without the block cache
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockBenchmark{
+
+    @Param({"1", "10"})
+    public int listeners;
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    private Location custom;
+    private Location vanilla;
+
+    @Setup
+    public void setup(){
+        BenchmarkServer.install();
+        custom = BenchmarkServer.location(10, 64, 10);
+        vanilla = BenchmarkServer.location(-10, 64, -10);
+        for(int i = 0; i < listeners; i++){
+            ItemBridge bridge = new ItemBridge(BenchmarkServer.createPlugin("Bench" + i, BenchmarkServer.createDataFolder()), "bench" + i);
+            // only the last listener owns the custom block
+            bridge.registerListener(new MaterialListener("block" + i, Material.STONE, i == listeners - 1 ? custom : null, false));
+        }
+        ItemBridge.setBlockCacheEnabled(cache);
+    }
+
+    @TearDown
+    public void tearDown(){
+        ItemBridge.setBlockCacheEnabled(false);
+    }
+
+    @Benchmark
+    public ItemBridgeKey getCustomBlock(){
+        return ItemBridge.getBlock(custom);
+    }
+
+    @Benchmark
+    public ItemBridgeKey getVanillaBlock(){
+        return ItemBridge.getBlock(vanilla);
+    }
+}
@@ -0,0 +1,58 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reverse lookups with {@code getItemKey}, with a growing number of registered listeners. The custom item belongs to
+ * the last listener that's asked, so unless the listeners declare their materials, every other listener has to be
+ * asked first
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ItemKeyBenchmark{
+
+    @Param({"1", "10", "50"})
+    public int listeners;
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    @Param({"false", "true"})
+    public boolean declareMaterials;
+
+    private ItemStack custom;
+    private ItemStack vanilla;
+
+    @Setup
+    public void setup(){
+        BenchmarkServer.install();
+        List<Material> materials = BenchmarkServer.itemMaterials(listeners + 1);
+        for(int i = 0; i < listeners; i++){
+            ItemBridge bridge = new ItemBridge(BenchmarkServer.createPlugin("Bench" + i, BenchmarkServer.createDataFolder()), "bench" + i);
+            bridge.registerListener(new MaterialListener("item" + i, materials.get(i), null, declareMaterials));
+        }
+        ItemBridge.setItemKeyCacheSize(cache ? ItemKeyCache.DEFAULT_SIZE : 0);
+
+        custom = new ItemStack(materials.get(listeners - 1));
+        vanilla = new ItemStack(materials.get(listeners));
+    }
+
+    @Benchmark
+    public ItemBridgeKey getCustomItemKey(){
+        return ItemBridge.getItemKey(custom);
+    }
+
+    @Benchmark
+    public ItemBridgeKey getVanillaItemKey(){
+        return ItemBridge.getItemKey(vanilla);
+    }
+}
@@ -0,0 +1,61 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating and checking items by their ID: {@code getItemStack(String)} and {@code isItemStack}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ItemStackBenchmark{
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    private ItemStack custom;
+    private ItemStack vanilla;
+
+    @Setup
+    public void setup(){
+        BenchmarkServer.install();
+        ItemBridge bridge = new ItemBridge(BenchmarkServer.createPlugin("Bench", BenchmarkServer.createDataFolder()), "bench");
+        bridge.registerListener(new MaterialListener("gem", Material.DIAMOND));
+        ItemBridge.setItemStackCacheSize(cache ? ItemPrototypeCache.DEFAULT_SIZE : 0);
+
+        custom = new ItemStack(Material.DIAMOND);
+        vanilla = new ItemStack(Material.STONE);
+    }
+
+    @Benchmark
+    public ItemStack getVanillaItemStack(){
+        return ItemBridge.getItemStack("minecraft:stone");
+    }
+
+    @Benchmark
+    public ItemStack getVanillaItemStackWithoutNamespace(){
+        return ItemBridge.getItemStack("STONE");
+    }
+
+    @Benchmark
+    public ItemStack getCustomItemStack(){
+        return ItemBridge.getItemStack("bench:gem");
+    }
+
+    @Benchmark
+    public boolean isCustomItemStack(){
+        return ItemBridge.isItemStack(custom, "bench", "gem");
+    }
+
+    @Benchmark
+    public boolean isVanillaItemStack(){
+        return ItemBridge.isItemStack(vanilla, "minecraft", "stone");
+    }
+}
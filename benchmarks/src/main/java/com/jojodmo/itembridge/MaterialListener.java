@@ -0,0 +1,74 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A listener for a single custom item, which it recognizes by its material. Stands in for a real custom item plugin
+ */
+class MaterialListener implements ItemBridgeListener{
+
+    private final String name;
+    private final Material material;
+    private final Location block;
+    private final boolean declareMaterial;
+
+    MaterialListener(String name, Material material){
+        this(name, material, null, false);
+    }
+
+    /**
+     * @param block the location of the only custom block this listener knows about (optional)
+     * @param declareMaterial whether or not to tell ItemBridge which material the item has
+     */
+    MaterialListener(String name, Material material, Location block, boolean declareMaterial){
+        this.name = name;
+        this.material = material;
+        this.block = block;
+        this.declareMaterial = declareMaterial;
+    }
+
+    @Override
+    public Set<Material> getItemMaterials(){
+        return declareMaterial ? EnumSet.of(material) : null;
+    }
+
+    @Override
+    public ItemStack fetchItemStack(@NotNull String item){
+        return name.equalsIgnoreCase(item) ? new ItemStack(material) : null;
+    }
+
+    @Override
+    public boolean isCacheable(@NotNull String item, @NotNull Map<String, Object> parameters){
+        // every copy of the item is the same plain stack
+        return true;
+    }
+
+    @Override
+    public String getItemName(@NotNull ItemStack stack){
+        return stack.getType() == material ? name : null;
+    }
+
+    @Override
+    public boolean isItem(@NotNull ItemStack stack, @NotNull String item){
+        return stack.getType() == material && name.equalsIgnoreCase(item);
+    }
+
+    @Override
+    public String getBlock(@NotNull Location location){
+        return location.equals(block) ? name : null;
+    }
+
+    @Override
+    public Collection<String> getAvailableItems(){
+        return Collections.singletonList(name);
+    }
+}
@@ -0,0 +1,78 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code SavedItemBridge.get}, with the item already cached (warm) and with the item read from the saves folder
+ * every time (cold)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SavedItemBenchmark{
+
+    private static final int SAVED_ITEMS = 1000;
+    private static final String ITEM = "item500";
+
+    @Setup
+    public void setup() throws Exception{
+        BenchmarkServer.install();
+        File dataFolder = BenchmarkServer.createDataFolder();
+        File saves = new File(dataFolder, "saves");
+        if(!saves.mkdirs()){
+            throw new IllegalStateException("Could not create " + saves);
+        }
+
+        // the same format YamlSavedItemStorage writes
+        for(int i = 0; i < SAVED_ITEMS; i++){
+            YamlConfiguration config = new YamlConfiguration();
+            config.set("key", "item" + i);
+            config.set("saveTime", System.currentTimeMillis());
+            config.set("saveMethod", "benchmark");
+            config.set("item", new ItemStack(Material.DIAMOND, 1 + i % 64));
+            config.set("version", 1);
+            config.save(new File(saves, "item" + i + ".yml"));
+        }
+
+        Plugin plugin = BenchmarkServer.createPlugin("ItemBridge", dataFolder);
+        new SavedItemBridge(plugin);
+    }
+
+    @TearDown
+    public void tearDown(){
+        SavedItemBridge.shutdown();
+    }
+
+    @State(Scope.Thread)
+    public static class Cold{
+        @Setup(Level.Invocation)
+        public void evict(){
+            SavedItemBridge.invalidate(ITEM);
+        }
+    }
+
+    @Benchmark
+    public ItemStack getWarm(){
+        return SavedItemBridge.get(ITEM);
+    }
+
+    @Benchmark
+    public ItemStack getCold(Cold cold){
+        return SavedItemBridge.get(ITEM);
+    }
+
+    @Benchmark
+    public ItemStack getMissing(){
+        return SavedItemBridge.get("not_saved");
+    }
+}
@@ -0,0 +1,131 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.*;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the block cache used by {@code ItemBridge.getBlock} in sync with changes made outside of ItemBridge.
+ * MONITOR handlers run before the server applies the change, so another MONITOR handler can still look the block
+ * up and cache its old key. Every changed block is invalidated again one tick later to drop that entry
+ */
+class BlockCacheListener implements Listener{
+
+    private final Plugin plugin;
+
+    BlockCacheListener(Plugin plugin){
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlace(BlockPlaceEvent e){
+        invalidate(Collections.singletonList(e.getBlock().getLocation()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBreak(BlockBreakEvent e){
+        invalidate(Collections.singletonList(e.getBlock().getLocation()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBurn(BlockBurnEvent e){
+        invalidate(Collections.singletonList(e.getBlock().getLocation()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFade(BlockFadeEvent e){
+        invalidate(Collections.singletonList(e.getBlock().getLocation()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onForm(BlockFormEvent e){
+        invalidate(Collections.singletonList(e.getBlock().getLocation()));
+    }
+
+    // BlockSpreadEvent has its own handler list, so BlockFormEvent handlers don't see it
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSpread(BlockSpreadEvent e){
+        invalidate(Collections.singletonList(e.getBlock().getLocation()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFlow(BlockFromToEvent e){
+        invalidate(Arrays.asList(e.getBlock().getLocation(), e.getToBlock().getLocation()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(EntityChangeBlockEvent e){
+        invalidate(Collections.singletonList(e.getBlock().getLocation()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent e){
+        List<Location> changed = locations(e.blockList(), null);
+        changed.add(e.getBlock().getLocation());
+        invalidate(changed);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent e){
+        invalidate(locations(e.blockList(), null));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent e){
+        invalidate(locations(e.getBlocks(), e.getDirection()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent e){
+        invalidate(locations(e.getBlocks(), e.getDirection()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent e){
+        ItemBridge.invalidateBlockCache(e.getChunk());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent e){
+        ItemBridge.invalidateBlockCache(e.getWorld());
+    }
+
+    private void invalidate(List<Location> locations){
+        for(Location location : locations){
+            ItemBridge.invalidateBlockCache(location);
+        }
+        if(plugin.isEnabled()){
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                for(Location location : locations){
+                    ItemBridge.invalidateBlockCache(location);
+                }
+            });
+        }
+    }
+
+    private static List<Location> locations(List<Block> blocks, BlockFace movedTo){
+        List<Location> result = new ArrayList<>(movedTo == null ? blocks.size() : blocks.size() * 2);
+        for(Block block : blocks){
+            result.add(block.getLocation());
+            if(movedTo != null){
+                result.add(block.getRelative(movedTo).getLocation());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,129 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Caches which listener owns the block at each location, grouped by world and chunk so that a chunk's entries can
+ * be released when it unloads. Only custom blocks are remembered by key; vanilla blocks are cached as "not custom",
+ * and their type is always read from the world, since vanilla blocks change without going through ItemBridge
+ */
+class BlockKeyCache{
+
+    private final Map<UUID, Map<Long, Map<Integer, Resolved>>> worlds = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean enabled = false;
+
+    boolean isEnabled(){
+        return enabled;
+    }
+
+    void setEnabled(boolean enabled){
+        this.enabled = enabled;
+        if(!enabled){
+            invalidateAll();
+        }
+    }
+
+    Resolved get(Location location, Function<Location, Resolved> resolver){
+        World world = location.getWorld();
+        if(!enabled || world == null){
+            return resolver.apply(location);
+        }
+
+        int x = location.getBlockX();
+        int z = location.getBlockZ();
+        Integer block = blockIndex(x, location.getBlockY(), z);
+        long chunkKey = chunkKey(x >> 4, z >> 4);
+
+        // lookups never create maps, so looking up blocks in chunks that aren't cached doesn't leave anything behind
+        Map<Long, Map<Integer, Resolved>> chunks = worlds.get(world.getUID());
+        Map<Integer, Resolved> chunk = chunks == null ? null : chunks.get(chunkKey);
+        Resolved resolved = chunk == null ? null : chunk.get(block);
+        if(resolved != null){return resolved;}
+
+        long gen = generation.get();
+        resolved = resolver.apply(location);
+        // don't store results if any block was invalidated while resolving this one, and only cache loaded chunks,
+        // since the entries are released when the chunk unloads
+        if(gen == generation.get() && world.isChunkLoaded(x >> 4, z >> 4)){
+            worlds.computeIfAbsent(world.getUID(), k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(chunkKey, k -> new ConcurrentHashMap<>())
+                    .put(block, resolved);
+        }
+        return resolved;
+    }
+
+    void invalidate(Location location){
+        World world = location.getWorld();
+        if(world == null){return;}
+
+        generation.incrementAndGet();
+        Map<Long, Map<Integer, Resolved>> chunks = worlds.get(world.getUID());
+        if(chunks == null){return;}
+
+        int x = location.getBlockX();
+        int z = location.getBlockZ();
+        Map<Integer, Resolved> chunk = chunks.get(chunkKey(x >> 4, z >> 4));
+        if(chunk != null){
+            chunk.remove(blockIndex(x, location.getBlockY(), z));
+        }
+    }
+
+    void invalidate(Chunk chunk){
+        generation.incrementAndGet();
+        Map<Long, Map<Integer, Resolved>> chunks = worlds.get(chunk.getWorld().getUID());
+        if(chunks != null){
+            chunks.remove(chunkKey(chunk.getX(), chunk.getZ()));
+        }
+    }
+
+    void invalidate(World world){
+        generation.incrementAndGet();
+        worlds.remove(world.getUID());
+    }
+
+    void invalidateAll(){
+        generation.incrementAndGet();
+        worlds.clear();
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ){
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private static int blockIndex(int x, int y, int z){
+        return (y << 8) | ((x & 15) << 4) | (z & 15);
+    }
+
+    static class Resolved{
+        private final ItemBridgeKey key;
+        private final Map<String, Object> parameters;
+
+        /**
+         * @param key the key of the custom block, or {@code null} for a vanilla block
+         * @param parameters the parameters of the block, or {@code null} if it doesn't have any
+         */
+        Resolved(ItemBridgeKey key, Map<String, Object> parameters){
+            this.key = key;
+            this.parameters = parameters == null ? null : Collections.unmodifiableMap(new HashMap<>(parameters));
+        }
+
+        ItemBridgeKey getKey(){
+            return key;
+        }
+
+        Map<String, Object> getParameters(){
+            return parameters == null ? null : new HashMap<>(parameters);
+        }
+    }
+}
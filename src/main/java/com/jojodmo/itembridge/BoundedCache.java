@@ -0,0 +1,189 @@
+package com.jojodmo.itembridge;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+/**
+ * A size-bounded cache with optional expiry. Reads never lock; once the cache is full, entries are evicted in
+ * insertion order, except that entries read since the last pass get a second chance (CLOCK eviction).
+ * Every stored node is queued exactly once. Nodes that were invalidated, replaced or expired stay in the queue until
+ * eviction reaches them, and are pruned once they outnumber the live entries, so the queue stays proportional to the map
+ */
+class BoundedCache<K, V>{
+
+    private final Map<K, Node<K, V>> map = new ConcurrentHashMap<>();
+    private final Queue<Node<K, V>> order = new ConcurrentLinkedQueue<>();
+    // the size of the order queue, since ConcurrentLinkedQueue.size() walks the whole queue
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private volatile int maxSize;
+    private volatile long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    BoundedCache(int maxSize){
+        this(maxSize, 0, TimeUnit.MILLISECONDS);
+    }
+
+    BoundedCache(int maxSize, long ttl, TimeUnit unit){
+        this.maxSize = Math.max(0, maxSize);
+        this.ttlNanos = unit.toNanos(Math.max(0, ttl));
+    }
+
+    /**
+     * @return the cached value for {@code key}, or {@code null} if it isn't cached or has expired
+     */
+    V get(K key){
+        Node<K, V> node = map.get(key);
+        if(node == null){
+            misses.increment();
+            return null;
+        }
+        if(isExpired(node)){
+            map.remove(key, node);
+            misses.increment();
+            return null;
+        }
+
+        node.referenced = true;
+        hits.increment();
+        return node.value;
+    }
+
+    void put(K key, V value){
+        if(maxSize <= 0){return;}
+
+        Node<K, V> node = new Node<>(key, value);
+        map.put(key, node);
+        enqueue(node);
+        evictIfNeeded();
+    }
+
+    /**
+     * @return the value that was already cached for {@code key}, or {@code null} if {@code value} was stored
+     */
+    V putIfAbsent(K key, V value){
+        if(maxSize <= 0){return null;}
+
+        Node<K, V> node = new Node<>(key, value);
+        while(true){
+            Node<K, V> previous = map.putIfAbsent(key, node);
+            if(previous == null){
+                enqueue(node);
+                evictIfNeeded();
+                return null;
+            }
+            if(!isExpired(previous)){
+                return previous.value;
+            }
+            map.remove(key, previous);
+        }
+    }
+
+    void invalidate(K key){
+        map.remove(key);
+    }
+
+    void invalidateIf(BiPredicate<? super K, ? super V> predicate){
+        map.entrySet().removeIf(e -> predicate.test(e.getKey(), e.getValue().value));
+    }
+
+    void clear(){
+        // drain the queue node by node, so the counter stays exact while other threads keep adding
+        Node<K, V> node;
+        while((node = order.poll()) != null){
+            queued.decrementAndGet();
+            map.remove(node.key, node);
+        }
+        map.clear();
+    }
+
+    int size(){
+        return map.size();
+    }
+
+    int getMaxSize(){
+        return maxSize;
+    }
+
+    void setMaxSize(int maxSize){
+        this.maxSize = Math.max(0, maxSize);
+        if(this.maxSize == 0){
+            clear();
+        }
+        evictIfNeeded();
+    }
+
+    void setTimeToLive(long ttl, TimeUnit unit){
+        this.ttlNanos = unit.toNanos(Math.max(0, ttl));
+    }
+
+    ItemBridgeCacheStats getStats(){
+        return new ItemBridgeCacheStats(hits.sum(), misses.sum(), evictions.sum(), map.size(), maxSize);
+    }
+
+    void resetStats(){
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    private boolean isExpired(Node<K, V> node){
+        long ttl = ttlNanos;
+        return ttl > 0 && System.nanoTime() - node.created > ttl;
+    }
+
+    private void enqueue(Node<K, V> node){
+        queued.incrementAndGet();
+        order.add(node);
+    }
+
+    private void evictIfNeeded(){
+        // Each live node is re-queued at most once per pass, so this always terminates
+        int budget = queued.get() * 2 + 1;
+        while(budget-- > 0){
+            int size = map.size();
+            boolean full = size > maxSize;
+            if(!full && queued.get() <= size * 2 + 16){return;}
+
+            Node<K, V> node = order.poll();
+            if(node == null){return;}
+            queued.decrementAndGet();
+
+            // invalidated, replaced or expired since it was queued
+            if(map.get(node.key) != node){continue;}
+
+            if(!full){
+                // only pruning stale nodes, so keep every live one
+                enqueue(node);
+            }
+            else if(node.referenced && !isExpired(node)){
+                node.referenced = false;
+                enqueue(node);
+            }
+            else if(map.remove(node.key, node)){
+                evictions.increment();
+            }
+        }
+    }
+
+    private static class Node<K, V>{
+        private final K key;
+        private final V value;
+        private final long created = System.nanoTime();
+        private volatile boolean referenced = false;
+
+        private Node(K key, V value){
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * After starting from a catalog snapshot, lists the items of every live listener in the background. Thread-safe
+ * listeners are indexed asynchronously, and the others on the main thread, one listener per tick, so that large
+ * catalogs don't stall startup. Once every listener is indexed, the snapshot is dropped
+ */
+class CatalogReconciler implements Runnable{
+
+    private final Plugin plugin;
+    private final AtomicInteger running = new AtomicInteger();
+    private final long start = System.nanoTime();
+    private volatile BukkitTask task;
+
+    private CatalogReconciler(Plugin plugin){
+        this.plugin = plugin;
+    }
+
+    static void start(Plugin plugin){
+        CatalogReconciler reconciler = new CatalogReconciler(plugin);
+        reconciler.task = Bukkit.getScheduler().runTaskTimer(plugin, reconciler, 1, 1);
+    }
+
+    @Override
+    public void run(){
+        ItemBridgeListenerWrapper wrapper;
+        while((wrapper = ItemBridge.pollDeferredIndex()) != null){
+            if(!wrapper.threadSafe){
+                ItemBridge.indexDeferred(wrapper);
+                return;
+            }
+
+            ItemBridgeListenerWrapper async = wrapper;
+            running.incrementAndGet();
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                try{
+                    ItemBridge.indexDeferred(async);
+                }
+                finally{
+                    running.decrementAndGet();
+                }
+            });
+        }
+
+        if(running.get() == 0 && ItemBridge.finishDeferredIndexing()){
+            task.cancel();
+            Bukkit.getLogger().log(Level.INFO, "[ItemBridge] Finished listing the available items in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.jojodmo.itembridge;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes catalog.dat: the IDs in ItemBridge's item catalog when the server last stopped, so that tab
+ * completion and suggestions work right after startup, before every listener has listed its items again.
+ * The file is a gzipped list of IDs
+ */
+class CatalogSnapshot{
+
+    private static final int MAGIC = 0x49424354; // "IBCT"
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * @return the IDs in the snapshot, or {@code null} if there is no snapshot or it can't be read
+     */
+    static List<String> read(File file) throws IOException{
+        if(!file.exists()){return null;}
+
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))){
+            if(in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION){return null;}
+
+            int count = in.readInt();
+            List<String> ids = new ArrayList<>(Math.max(0, Math.min(count, 1 << 20)));
+            for(int i = 0; i < count; i++){
+                ids.add(in.readUTF());
+            }
+            return ids;
+        }
+    }
+
+    static void write(File file, Collection<String> ids) throws IOException{
+        File parent = file.getAbsoluteFile().getParentFile();
+        if(!parent.exists() && !parent.mkdirs()){
+            throw new IOException("Could not create the folder " + parent);
+        }
+
+        File temp = new File(parent, file.getName() + ".tmp");
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))))){
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(ids.size());
+            for(String id : ids){
+                out.writeUTF(id);
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
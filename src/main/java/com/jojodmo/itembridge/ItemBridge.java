@@ -1,31 +1,61 @@
 package com.jojodmo.itembridge;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 
+/**
+ * The registry of every plugin's custom items.
+ *
+ * All of the static lookup methods are safe to call from any thread, and never lock: they read from concurrent maps
+ * and from immutable snapshots of the registered listeners, which are replaced whenever listeners are registered or
+ * removed. Registering and removing listeners is also thread-safe, but is serialized on a single lock. Note that
+ * ItemBridge can't make the listeners themselves thread-safe, so a listener may still be called from whichever
+ * thread performed the lookup
+ */
 public class ItemBridge{
 
-    private static List<ItemBridge> instances = new ArrayList<>();
-    private static Map<String, ItemBridge> instanceMap = new HashMap<>();
+    private static final Object REGISTRY_LOCK = new Object();
 
-    Plugin plugin;
-    String defaultKey;
-    List<String> allKeys = new ArrayList<>();
-    private boolean valid = false;
-    private List<ItemBridgeListener> listeners = new ArrayList<>();
+    private static List<ItemBridge> instances = new CopyOnWriteArrayList<>();
+    private static Map<String, ItemBridge> instanceMap = new ConcurrentHashMap<>();
 
-    private static Map<ItemBridgeListenerPriority, List<ItemBridgeListenerWrapper>> listenersByPriority = new HashMap<>();
+    Plugin plugin;
+    volatile String defaultKey;
+    volatile List<String> allKeys = Collections.emptyList();
+    private volatile boolean valid = false;
+    private final List<ItemBridgeListenerWrapper> listeners = new CopyOnWriteArrayList<>();
+    private volatile int listenerVersion = 0;
+
+    // guarded by REGISTRY_LOCK. Lookups only ever read dispatch
+    private static List<ItemBridgeListenerWrapper> registeredListeners = new ArrayList<>();
+    private static volatile ItemBridgeListenerWrapper[] dispatch = new ItemBridgeListenerWrapper[0];
+    private static volatile ItemIndex itemIndex = new ItemIndex(dispatch);
+    private static final ItemKeyCache itemKeyCache = new ItemKeyCache();
+    private static final ItemPrototypeCache prototypeCache = new ItemPrototypeCache();
+    private static final BlockKeyCache blockCache = new BlockKeyCache();
+    private static final ItemCatalog catalog = new ItemCatalog();
 
     /**
      * Create a new instance of ItemBridge. Make sure to register listeners after using the {@code registerListener} functions
@@ -43,16 +73,30 @@ public class ItemBridge{
 
         List<String> added = new ArrayList<>();
         this.plugin = plugin;
-        if(keys == null || keys.isEmpty()){
-            if(checkAndAddKey(plugin.getName())){
-                added.add(plugin.getName());
+        // Keys are claimed under the lock, and only published once this instance is fully set up, so a lookup on
+        // another thread can never find an ItemBridge without its default key
+        synchronized(REGISTRY_LOCK){
+            if(keys == null || keys.isEmpty()){
+                if(checkKey(plugin.getName(), added)){
+                    added.add(plugin.getName());
+                }
             }
-        }
-        else{
-            for(String key : keys){
-                if(checkAndAddKey(key)){
-                    added.add(key);
+            else{
+                for(String key : keys){
+                    if(checkKey(key, added)){
+                        added.add(key);
+                    }
+                }
+            }
+
+            valid = added.size() > 0;
+            if(valid){
+                this.defaultKey = added.get(0);
+                allKeys = Collections.unmodifiableList(added);
+                for(String key : added){
+                    instanceMap.put(key.toLowerCase(), this);
                 }
+                instances.add(this);
             }
         }
 
@@ -74,29 +118,25 @@ public class ItemBridge{
             }
             Bukkit.getLogger().log(Level.INFO,"[ItemBridge] Successfully attached the key" + s + " " + addedStr.toString() + " to the plugin " + this.plugin.getName());
         }
-
-        valid = added.size() > 0;
-        if(valid){
-            this.defaultKey = added.get(0);
-            instances.add(this);
-            allKeys = added;
-        }
     }
 
     private ItemBridge(Plugin plugin){this.plugin = plugin;}
     static ItemBridge init(Plugin plugin, String... keys){
         ItemBridge itemBridge = new ItemBridge(plugin);
-        for(String key : keys){
-            instanceMap.put(key.toLowerCase(), itemBridge);
-        }
-        itemBridge.valid = true;
         itemBridge.defaultKey = keys[0].toLowerCase();
-        instances.add(itemBridge);
+        itemBridge.valid = true;
+        synchronized(REGISTRY_LOCK){
+            for(String key : keys){
+                instanceMap.put(key.toLowerCase(), itemBridge);
+            }
+            instances.add(itemBridge);
+        }
         return itemBridge;
     }
 
     private static final Pattern RESERVED_KEYS = Pattern.compile("^(minecraft|mc|mojang|itembridge|item|block|entity|mob|monster|potion|saved|save|saves|bukkit|spigot|paper|null|resource)$");
-    private boolean checkAndAddKey(String key){
+    // guarded by REGISTRY_LOCK
+    private boolean checkKey(String key, List<String> added){
         key = key.toLowerCase();
         if(!key.matches("^[a-z0-9._-]+$")){
             Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Could not associate the key '" + key + "' with the plugin '" + this.plugin.getName() + "'. Reason: Keys can only contain letters, numbers, dots, dashes, and underscores");
@@ -106,13 +146,18 @@ public class ItemBridge{
             Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Could not associate the key '" + key + "' with the plugin '" + this.plugin.getName() + "'. Reason: This key is reserved");
             return false;
         }
-        else if(instanceMap.containsKey(key)){
-            Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Could not associate the key '" + key + "' with the plugin '" + this.plugin.getName() + "'. Reason: The key is already in use by the plugin '" + instanceMap.get(key).plugin.getName() + "'");
-            return false;
-        }
         else{
+            ItemBridge existing = instanceMap.get(key);
+            for(String claimed : added){
+                if(claimed.equalsIgnoreCase(key)){
+                    existing = this;
+                }
+            }
+            if(existing != null){
+                Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Could not associate the key '" + key + "' with the plugin '" + this.plugin.getName() + "'. Reason: The key is already in use by the plugin '" + existing.plugin.getName() + "'");
+                return false;
+            }
             //Bukkit.getLogger().log(Level.INFO, "[ItemBridge] Successfully attached the key '" + key + "' to the plugin " + this.plugin.getName());
-            instanceMap.put(key, this);
             return true;
         }
     }
@@ -133,32 +178,327 @@ public class ItemBridge{
     }
 
     public void registerListener(ItemBridgeListener listener){
-        ItemBridgeListenerPriority p = listener.getPriority();
-        List<ItemBridgeListenerWrapper> list = listenersByPriority.getOrDefault(p, new ArrayList<>());
-        list.add(new ItemBridgeListenerWrapper(listener, this));
-        listenersByPriority.put(p, list);
-
-        this.listeners.add(listener);
+        synchronized(REGISTRY_LOCK){
+            ItemBridgeListenerWrapper wrapper = new ItemBridgeListenerWrapper(listener, this);
+            registeredListeners.add(wrapper);
+            compileDispatch();
+
+            this.listeners.add(wrapper);
+            this.listenerVersion++;
+            prototypeCache.invalidate(this.defaultKey);
+            itemKeyCache.invalidateAll();
+            blockCache.invalidateAll();
+
+            if(deferIndexing){
+                deferredIndex.add(wrapper);
+                return;
+            }
+        }
+        indexListener(this, listener);
     }
 
     public void removeListener(ItemBridgeListener listener){
-        ItemBridgeListenerPriority p = listener.getPriority();
-        List<ItemBridgeListenerWrapper> list = listenersByPriority.getOrDefault(p, new ArrayList<>());
-        list.remove(new ItemBridgeListenerWrapper(listener, this));
-        listenersByPriority.put(p, list);
-
-        this.listeners.remove(listener);
+        synchronized(REGISTRY_LOCK){
+            ItemBridgeListenerWrapper wrapper = new ItemBridgeListenerWrapper(listener, this);
+            registeredListeners.remove(wrapper);
+            compileDispatch();
+
+            this.listeners.remove(wrapper);
+            this.listenerVersion++;
+            prototypeCache.invalidate(this.defaultKey);
+            itemKeyCache.invalidateAll();
+            blockCache.invalidateAll();
+        }
+        catalog.unindex(this, listener);
     }
 
     public void removeAllListeners(){
-        for(ItemBridgeListener listener : this.listeners){
-            ItemBridgeListenerPriority p = listener.getPriority();
-            List<ItemBridgeListenerWrapper> list = listenersByPriority.getOrDefault(p, new ArrayList<>());
-            list.remove(new ItemBridgeListenerWrapper(listener, this));
-            listenersByPriority.put(p, list);
+        synchronized(REGISTRY_LOCK){
+            for(ItemBridgeListenerWrapper l : this.listeners){
+                registeredListeners.remove(l);
+                catalog.unindex(this, l.listener);
+            }
+            compileDispatch();
+
+            this.listeners.clear();
+            this.listenerVersion++;
+            prototypeCache.invalidate(this.defaultKey);
+            itemKeyCache.invalidateAll();
+            blockCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Rebuild the flat array that every lookup iterates: all registered listeners, ordered by priority
+     * (HIGHEST first), then with catch-all listeners (which recognize every stack) last, then with listeners demoted
+     * by the watchdog last, then (with adaptive ordering) by how often
+     * they recognize items, then by registration order. Must hold REGISTRY_LOCK
+     */
+    private static void compileDispatch(){
+        List<ItemBridgeListenerWrapper> listeners = new ArrayList<>(registeredListeners);
+
+        // the watchdog demotes listeners from lookup threads, so the sort works on a copy of everything it compares.
+        // Otherwise a listener could change places in the middle of the sort, and break the comparator's contract
+        int size = listeners.size();
+        int[] priority = new int[size];
+        boolean[] catchAll = new boolean[size];
+        boolean[] demoted = new boolean[size];
+        double[] score = new double[size];
+        Integer[] positions = new Integer[size];
+        for(int i = 0; i < size; i++){
+            ItemBridgeListenerWrapper l = listeners.get(i);
+            priority[i] = l.priority.ordinal();
+            catchAll[i] = l.catchAll;
+            demoted[i] = l.watchdog.isDemoted();
+            score[i] = adaptiveOrdering ? l.adaptiveScore : 0;
+            positions[i] = i;
+        }
+        Arrays.sort(positions, Comparator.<Integer>comparingInt(i -> priority[i]).thenComparing(i -> catchAll[i]).thenComparing(i -> demoted[i]).thenComparingDouble(i -> -score[i]));
+
+        ItemBridgeListenerWrapper[] sorted = new ItemBridgeListenerWrapper[size];
+        for(int i = 0; i < size; i++){
+            sorted[i] = listeners.get(positions[i]);
+        }
+        dispatch = sorted;
+        itemIndex = new ItemIndex(dispatch);
+    }
+
+    private static final double ADAPTIVE_DECAY = 0.5;
+    private static volatile boolean adaptiveOrdering = false;
+
+    /**
+     * Turn adaptive ordering on or off. With adaptive ordering, listeners with the same priority are asked in order
+     * of how many items they recognized recently, instead of in the order they were registered, so that
+     * {@code getItemKey} has to ask fewer listeners. Listeners are never moved past a listener with a different
+     * priority, and a listener that recognizes every stack (like the minecraft listener) always stays last in its
+     * priority, however many items it answers for. Note that if two listeners with the same priority recognize the
+     * same item, either one may answer
+     */
+    public static void setAdaptiveOrderingEnabled(boolean enabled){
+        synchronized(REGISTRY_LOCK){
+            if(adaptiveOrdering == enabled){return;}
+
+            adaptiveOrdering = enabled;
+            for(ItemBridgeListenerWrapper l : registeredListeners){
+                l.adaptiveHits.reset();
+                l.adaptiveScore = 0;
+            }
+            compileDispatch();
+        }
+    }
+
+    public static boolean isAdaptiveOrderingEnabled(){
+        return adaptiveOrdering;
+    }
+
+    /**
+     * Fold the hits since the last call into each listener's score, halving the older hits so the order follows
+     * what's used now, and reorder the listeners by their new scores. ItemBridge calls this periodically
+     */
+    static void updateAdaptiveOrder(){
+        if(!adaptiveOrdering){return;}
+
+        synchronized(REGISTRY_LOCK){
+            for(ItemBridgeListenerWrapper l : registeredListeners){
+                l.adaptiveScore = l.adaptiveScore * ADAPTIVE_DECAY + l.adaptiveHits.sumThenReset();
+            }
+            compileDispatch();
+        }
+    }
+
+    /**
+     * Move a listener the watchdog demoted behind the other listeners with the same priority, or a listener it
+     * promoted back to its place
+     */
+    static void updateWatchdogOrder(ItemBridgeListenerWrapper wrapper){
+        synchronized(REGISTRY_LOCK){
+            if(!registeredListeners.contains(wrapper)){return;}
+
+            compileDispatch();
+            itemKeyCache.invalidateAll();
+            blockCache.invalidateAll();
+        }
+    }
+
+    // while a catalog snapshot is standing in for the live listeners, new listeners are indexed by the CatalogReconciler
+    private static boolean deferIndexing = false;
+    private static final Queue<ItemBridgeListenerWrapper> deferredIndex = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Fill the catalog from the snapshot saved when the server last stopped, and index listeners registered from now
+     * on in the background (see {@code CatalogReconciler}) instead of right away
+     * @return whether or not a snapshot was loaded
+     */
+    static boolean loadCatalogSnapshot(File file){
+        long start = System.nanoTime();
+        List<String> ids;
+        try{
+            ids = CatalogSnapshot.read(file);
+        }
+        catch(Exception ex){
+            Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Could not read the item catalog snapshot " + file, ex);
+            return false;
+        }
+        if(ids == null){return false;}
+
+        synchronized(REGISTRY_LOCK){
+            catalog.loadSnapshot(ids);
+            deferIndexing = true;
+        }
+        Bukkit.getLogger().log(Level.INFO, "[ItemBridge] Loaded " + ids.size() + " item IDs from the catalog snapshot in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        return true;
+    }
+
+    static void saveCatalogSnapshot(File file){
+        try{
+            CatalogSnapshot.write(file, catalog.snapshot());
+        }
+        catch(Exception ex){
+            Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Could not save the item catalog snapshot " + file, ex);
+        }
+    }
+
+    /**
+     * @return the next listener whose indexing was deferred, or {@code null} if there are none left
+     */
+    static ItemBridgeListenerWrapper pollDeferredIndex(){
+        return deferredIndex.poll();
+    }
+
+    static void indexDeferred(ItemBridgeListenerWrapper wrapper){
+        // the listener may have been removed while it was waiting
+        if(wrapper.bridge.listeners.contains(wrapper)){
+            indexListener(wrapper.bridge, wrapper.listener);
+        }
+    }
+
+    /**
+     * Stop deferring, and drop the snapshot now that every live listener is indexed
+     * @return {@code false} if more listeners were registered in the meantime, and need to be indexed first
+     */
+    static boolean finishDeferredIndexing(){
+        synchronized(REGISTRY_LOCK){
+            if(!deferredIndex.isEmpty()){return false;}
+
+            deferIndexing = false;
+            catalog.dropSnapshot();
+            return true;
+        }
+    }
+
+    /**
+     * Stop deferring without indexing the listeners that are still waiting, for when ItemBridge is disabled
+     */
+    static void cancelDeferredIndexing(){
+        synchronized(REGISTRY_LOCK){
+            deferredIndex.clear();
+            deferIndexing = false;
+            catalog.dropSnapshot();
+        }
+    }
+
+    private static void indexListener(ItemBridge bridge, ItemBridgeListener listener){
+        try{
+            catalog.index(bridge, listener);
+        }
+        catch(Exception ex){
+            Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Could not list the available items of the plugin " + bridge.plugin.getName(), ex);
+        }
+    }
+
+    /**
+     * Re-list the available items of every listener. ItemBridge lists a listener's items when it's registered, so
+     * call this if your plugin's available items change afterwards (for example, after a reload)
+     */
+    public static void refreshCatalog(){
+        for(ItemBridgeListenerWrapper l : dispatch){
+            indexListener(l.bridge, l.listener);
         }
+    }
+
+    /**
+     * Re-list the available items of the listeners of the given plugin
+     * @param key any of the keys of the plugin
+     */
+    public static void refreshCatalog(@NotNull String key){
+        ItemBridge instance = instanceMap.get(key.toLowerCase());
+        if(instance == null){return;}
+
+        for(ItemBridgeListenerWrapper l : instance.listeners){
+            indexListener(instance, l.listener);
+        }
+    }
+
+    static boolean isListed(ItemBridge bridge, ItemBridgeListener listener, String item){
+        return catalog.lists(bridge, listener, item);
+    }
+
+    static void updateCatalog(ItemBridge bridge, ItemBridgeListener listener, String item, boolean available){
+        catalog.update(bridge, listener, item, available);
+    }
 
-        this.listeners.clear();
+    /**
+     * Find the IDs of the available items that start with the given text, for tab completion
+     * @param prefix the start of the ID, case insensitive. This can use any of a plugin's keys as the namespace
+     * @param limit the maximum number of IDs to return
+     * @return the matching IDs, as PLUGIN:ITEM_NAME_HERE, in alphabetical order
+     */
+    @NotNull
+    public static List<String> completeItem(@NotNull String prefix, int limit){
+        int colon = prefix.indexOf(':');
+        if(colon >= 0){
+            String namespace = prefix.substring(0, colon);
+            ItemBridge instance = instanceMap.get(namespace.toLowerCase());
+            if(instance != null && !instance.defaultKey.equals(namespace)){
+                // complete aliases like mc: against the default key, then give the results back using the alias
+                List<String> result = new ArrayList<>();
+                for(String id : catalog.complete(instance.defaultKey + prefix.substring(colon), limit)){
+                    result.add(namespace + id.substring(instance.defaultKey.length()));
+                }
+                return result;
+            }
+        }
+        return catalog.complete(prefix, limit);
+    }
+
+    /**
+     * Find the available items whose names are most similar to the given item, for "did you mean" messages
+     * @param item a String in the format PLUGIN:ITEM_NAME_HERE, or just ITEM_NAME_HERE, that didn't match any item
+     * @param limit the maximum number of suggestions to return
+     * @return the keys of the most similar items, most similar first. Items from the plugin given in {@code item}
+     * come first among equally similar names
+     */
+    @NotNull
+    public static List<ItemBridgeKey> getSuggestions(@NotNull String item, int limit){
+        int colon = item.indexOf(':');
+        if(colon >= 0){
+            ItemBridge instance = instanceMap.get(item.substring(0, colon).toLowerCase());
+            if(instance != null){
+                item = instance.defaultKey + item.substring(colon);
+            }
+        }
+
+        List<ItemBridgeKey> result = new ArrayList<>();
+        for(String id : catalog.suggest(item, limit)){
+            result.add(ItemBridgeKey.parse(id));
+        }
+        return result;
+    }
+
+    List<ItemBridgeListenerWrapper> getListeners(){
+        return this.listeners;
+    }
+
+    /**
+     * @return a number that changes every time a listener is registered to or removed from this ItemBridge
+     */
+    int getListenerVersion(){
+        return this.listenerVersion;
+    }
+
+    @Nullable
+    static ItemBridge getInstance(@NotNull String key){
+        return instanceMap.get(key.toLowerCase());
     }
 
     public int getListenerCount(){
@@ -189,7 +529,7 @@ public class ItemBridge{
      * @return ItemStack given by the name {@code item} for the plugin {@code plugin}, or {@code null} if the item does not exist
      */
     public static ItemStack getItemStack(Plugin plugin, String item){
-        return getItemStack(plugin, item, new HashMap<>());
+        return getItemStack(plugin, item, ItemBridgeParameters.EMPTY);
     }
 
     /**
@@ -211,7 +551,7 @@ public class ItemBridge{
      */
     @Deprecated
     public static ItemStack getItemStack(NamespacedKey key){
-        return getItemStack(key, new HashMap<>());
+        return getItemStack(key, ItemBridgeParameters.EMPTY);
     }
 
     /**
@@ -232,7 +572,7 @@ public class ItemBridge{
      * @return ItemStack given by the name {@code item} for the plugin {@code plugin}, or {@code null} if the item does not exist
      */
     public static ItemStack getItemStack(ItemBridgeKey key){
-        return getItemStack(key, new HashMap<>());
+        return getItemStack(key, ItemBridgeParameters.EMPTY);
     }
 
     /**
@@ -253,7 +593,7 @@ public class ItemBridge{
      * @return ItemStack given by the key {@code key} and item name {@code item}, or {@code null} if the item does not exist
      */
     public static ItemStack getItemStack(String key, String item){
-        return getItemStack(key, item, new HashMap<>());
+        return getItemStack(key, item, ItemBridgeParameters.EMPTY);
     }
 
     /**
@@ -271,14 +611,196 @@ public class ItemBridge{
         ItemBridge instance = instanceMap.get(key.toLowerCase());
         if(instance == null){return null;}
 
-        if(parameters == null){parameters = new HashMap<>();}
-        for(ItemBridgeListener listener : instance.listeners){
-            ItemStack is = listener.fetchItemStack(item, parameters);
-            if(is != null){return is;}
+        if(parameters == null){parameters = ItemBridgeParameters.EMPTY;}
+        ItemStack cached = prototypeCache.get(instance, item, parameters);
+        if(cached != null){return cached;}
+
+        for(ItemBridgeListenerWrapper l : instance.listeners){
+            ItemStack is = l.fetchItemStack(item, parameters);
+            if(is != null){
+                is = tagItemStack(instance, item, parameters, is);
+                prototypeCache.offer(instance, l.listener, item, parameters, is);
+                return is;
+            }
         }
         return null;
     }
 
+    /**
+     * Put the identity tag on an item a listener created, if tagging is enabled
+     */
+    static ItemStack tagItemStack(ItemBridge instance, String item, Map<String, Object> parameters, ItemStack stack){
+        return ItemIdentityTag.isEnabled() ? ItemIdentityTag.tag(instance, item, parameters, stack) : stack;
+    }
+
+    /**
+     * @return the key in the identity tag of the given stack, or {@code null} if it isn't tagged, the plugin is gone,
+     * or (when verification is on) the plugin doesn't recognize the item anymore
+     */
+    private static ItemIdentityTag.Tag readTag(ItemStack stack){
+        ItemIdentityTag.Tag tag = ItemIdentityTag.read(stack);
+        if(tag == null){return null;}
+
+        ItemBridge instance = instanceMap.get(tag.getKey().getNamespace());
+        if(instance == null){return null;}
+        if(!ItemIdentityTag.shouldVerify()){return tag;}
+
+        for(ItemBridgeListenerWrapper l : instance.listeners){
+            if(l.isItem(stack, tag.getKey().getItem())){
+                return tag;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Fetch many ItemStacks at once. This is faster than calling {@code getItemStack} for each item, since each plugin
+     * is looked up once, and its listeners get every item from that plugin in a single call
+     * @param keys the ItemBridgeKeys of the items
+     * @return a Map from each key to its ItemStack, in the same order as {@code keys}. Items that do not exist are left out
+     */
+    @NotNull
+    public static Map<ItemBridgeKey, ItemStack> getItemStacks(@NotNull Collection<ItemBridgeKey> keys){
+        return getItemStacks(keys, ItemBridgeParameters.EMPTY);
+    }
+
+    /**
+     * Fetch many ItemStacks at once. This is faster than calling {@code getItemStack} for each item, since each plugin
+     * is looked up once, and its listeners get every item from that plugin in a single call
+     * @param keys the ItemBridgeKeys of the items
+     * @param parameters the parameters used for every item (optional)
+     * @return a Map from each key to its ItemStack, in the same order as {@code keys}. Items that do not exist are left out
+     */
+    @NotNull
+    public static Map<ItemBridgeKey, ItemStack> getItemStacks(@NotNull Collection<ItemBridgeKey> keys, @NotNull Map<String, Object> parameters){
+        if(parameters == null){parameters = ItemBridgeParameters.EMPTY;}
+
+        Map<ItemBridge, Map<String, List<ItemBridgeKey>>> byBridge = new LinkedHashMap<>();
+        for(ItemBridgeKey key : keys){
+            ItemBridge instance = instanceMap.get(key.getNamespace());
+            if(instance != null){
+                byBridge.computeIfAbsent(instance, k -> new LinkedHashMap<>()).computeIfAbsent(key.getItem(), k -> new ArrayList<>()).add(key);
+            }
+        }
+
+        Map<ItemBridgeKey, ItemStack> found = new HashMap<>();
+        for(Map.Entry<ItemBridge, Map<String, List<ItemBridgeKey>>> group : byBridge.entrySet()){
+            ItemBridge instance = group.getKey();
+            Map<String, List<ItemBridgeKey>> items = group.getValue();
+
+            Set<String> remaining = new LinkedHashSet<>();
+            for(String item : items.keySet()){
+                ItemStack cached = prototypeCache.get(instance, item, parameters);
+                if(cached == null){
+                    remaining.add(item);
+                }
+                else{
+                    putAll(found, items.get(item), cached);
+                }
+            }
+
+            for(ItemBridgeListenerWrapper l : instance.listeners){
+                if(remaining.isEmpty()){break;}
+
+                Map<String, ItemStack> fetched = l.fetchItemStacks(Collections.unmodifiableSet(new LinkedHashSet<>(remaining)), parameters);
+                for(Map.Entry<String, ItemStack> e : fetched.entrySet()){
+                    if(e.getValue() != null && remaining.remove(e.getKey())){
+                        ItemStack is = tagItemStack(instance, e.getKey(), parameters, e.getValue());
+                        prototypeCache.offer(instance, l.listener, e.getKey(), parameters, is);
+                        putAll(found, items.get(e.getKey()), is);
+                    }
+                }
+            }
+        }
+
+        Map<ItemBridgeKey, ItemStack> result = new LinkedHashMap<>();
+        for(ItemBridgeKey key : keys){
+            ItemStack is = found.get(key);
+            if(is != null){
+                result.put(key, is);
+            }
+        }
+        return result;
+    }
+
+    private static void putAll(Map<ItemBridgeKey, ItemStack> found, List<ItemBridgeKey> keys, ItemStack stack){
+        // every distinct key gets its own ItemStack, so callers can modify them independently
+        for(int i = 0; i < keys.size(); i++){
+            found.put(keys.get(i), i == 0 ? stack : stack.clone());
+        }
+    }
+
+    static ItemStack getCachedItemStack(ItemBridge instance, String item, Map<String, Object> parameters){
+        return prototypeCache.get(instance, item, parameters);
+    }
+
+    static void offerCachedItemStack(ItemBridge instance, ItemBridgeListener listener, String item, Map<String, Object> parameters, ItemStack stack){
+        prototypeCache.offer(instance, listener, item, parameters, stack);
+    }
+
+    /**
+     * Discard every cached item prototype for the given plugin. Call this if your listener declares its items
+     * cacheable (see {@code ItemBridgeListener.isCacheable}) and the definition of those items changes
+     * @param key any of the keys of the plugin
+     */
+    public static void invalidateItemStackCache(@NotNull String key){
+        ItemBridge instance = instanceMap.get(key.toLowerCase());
+        if(instance != null){
+            prototypeCache.invalidate(instance.defaultKey);
+        }
+    }
+
+    /**
+     * Discard every cached item prototype for every plugin
+     */
+    public static void invalidateItemStackCache(){
+        prototypeCache.invalidateAll();
+    }
+
+    /**
+     * Set the maximum number of item prototypes kept by {@code getItemStack}
+     * @param size the maximum number of prototypes, or {@code 0} to disable the cache
+     */
+    public static void setItemStackCacheSize(int size){
+        prototypeCache.setMaxSize(size);
+    }
+
+    /**
+     * Set how long item prototypes are kept by {@code getItemStack} before the listener is asked for the item again
+     * @param ttl the time to live, or {@code 0} to keep prototypes until they're evicted or invalidated
+     * @param unit the unit of {@code ttl}
+     */
+    public static void setItemStackCacheTimeToLive(long ttl, @NotNull TimeUnit unit){
+        prototypeCache.setTimeToLive(ttl, unit);
+    }
+
+    @NotNull
+    public static ItemBridgeCacheStats getItemStackCacheStats(){
+        return prototypeCache.getStats();
+    }
+
+    /**
+     * Resolve the given key to a handle. Use this instead of {@code getItemStack} when you create or check the
+     * same item over and over (for example, an item loaded from your config), since the handle remembers which
+     * listener provides the item
+     * @param key the ItemBridgeKey for the item
+     * @return a handle for the given key. This is never {@code null}, even if the item doesn't exist (yet)
+     */
+    @NotNull
+    public static ItemBridgeHandle resolve(@NotNull ItemBridgeKey key){
+        return new ItemBridgeHandle(key);
+    }
+
+    /**
+     * Resolve the given String to a handle
+     * @param item a String in the format PLUGIN:ITEM_NAME_HERE. If PLUGIN isn't present, Minecraft materials will be used
+     * @return a handle for the given item
+     */
+    @NotNull
+    public static ItemBridgeHandle resolve(@NotNull String item){
+        return resolve(ItemBridgeKey.parse(item));
+    }
+
     /**
      * Fetch an ItemStack for the given String
      * @param item a String in the format PLUGIN:ITEM_NAME_HERE that represents the item from the given plugin
@@ -287,7 +809,7 @@ public class ItemBridge{
      *         default Minecraft material for the given name will be returned
      */
     public static ItemStack getItemStack(@Nullable String item){
-        return getItemStack(item, new HashMap<>());
+        return getItemStack(item, ItemBridgeParameters.EMPTY);
     }
 
     /**
@@ -300,12 +822,7 @@ public class ItemBridge{
      */
     public static ItemStack getItemStack(@Nullable String item, Map<String, Object> parameters){
         if(item == null){return null;}
-
-        String[] split = item.split(":", 2);
-        if(split.length == 1){
-            return getItemStack("minecraft", item, parameters);
-        }
-        return getItemStack(split[0], split[1], parameters);
+        return getItemStack(ItemBridgeKey.parse(item), parameters);
     }
 
     /**
@@ -324,8 +841,28 @@ public class ItemBridge{
         ItemBridge instance = instanceMap.get(key.toLowerCase());
         if(instance == null){return false;}
 
-        for(ItemBridgeListener listener : instance.listeners){
-            if(listener.isItem(stack, item, params)){
+        if(ItemIdentityTag.isEnabled() && !ItemIdentityTag.shouldVerify()){
+            ItemIdentityTag.Tag tag = ItemIdentityTag.read(stack);
+            if(tag != null){
+                if(instanceMap.get(tag.getKey().getNamespace()) != instance || !tag.getKey().getItem().equalsIgnoreCase(item)
+                        || tag.getParametersHash() != ItemIdentityTag.hash(params)){
+                    return false;
+                }
+
+                // different parameters can have the same hash, so a matching hash is only trusted once the item's
+                // actual parameters match too. If no listener reports them, the listeners decide below
+                for(ItemBridgeListenerWrapper l : instance.listeners){
+                    Map<String, Object> actual = l.getParameters(stack);
+                    if(actual != null){
+                        return ItemBridgeParameters.matches(actual, params);
+                    }
+                }
+            }
+        }
+
+        for(ItemBridgeListenerWrapper l : instance.listeners){
+            if(stack != null && !l.canHaveMaterial(stack.getType())){continue;}
+            if(l.isItem(stack, item, params)){
                 return true;
             }
         }
@@ -347,8 +884,16 @@ public class ItemBridge{
         ItemBridge instance = instanceMap.get(key.toLowerCase());
         if(instance == null){return false;}
 
-        for(ItemBridgeListener listener : instance.listeners){
-            if(listener.isItem(stack, item)){
+        if(ItemIdentityTag.isEnabled() && !ItemIdentityTag.shouldVerify()){
+            ItemIdentityTag.Tag tag = ItemIdentityTag.read(stack);
+            if(tag != null){
+                return instanceMap.get(tag.getKey().getNamespace()) == instance && tag.getKey().getItem().equalsIgnoreCase(item);
+            }
+        }
+
+        for(ItemBridgeListenerWrapper l : instance.listeners){
+            if(stack != null && !l.canHaveMaterial(stack.getType())){continue;}
+            if(l.isItem(stack, item)){
                 return true;
             }
         }
@@ -364,25 +909,88 @@ public class ItemBridge{
     @Nullable
     public static ItemBridgeKey getItemKey(@Nullable ItemStack stack){
         if(stack == null){return null;}
+        if(ItemIdentityTag.isEnabled()){
+            ItemIdentityTag.Tag tag = readTag(stack);
+            if(tag != null){return tag.getKey();}
+        }
+        return itemKeyCache.getKey(stack, ItemBridge::resolveItemKey);
+    }
 
-        for(ItemBridgeListenerPriority p : ItemBridgeListenerPriority.values()){
-            ItemBridgeKey key = getItemKey(p, stack);
-            if(key != null){return key;}
+    /**
+     * Fetch an ItemStack from any thread. If every listener of the item's plugin is thread-safe (see
+     * {@code ItemBridgeListener.isThreadSafe}), or this is called on the main thread, the item is created right away.
+     * Otherwise, it's created on the main thread, together with every other async lookup made during the same tick
+     * @param item a String in the format PLUGIN:ITEM_NAME_HERE that represents the item from the given plugin
+     * @return a future for the ItemStack, which completes with {@code null} if the item does not exist
+     */
+    @NotNull
+    public static CompletableFuture<ItemStack> getItemStackAsync(@NotNull String item){
+        return getItemStackAsync(ItemBridgeKey.parse(item), ItemBridgeParameters.EMPTY);
+    }
+
+    @NotNull
+    public static CompletableFuture<ItemStack> getItemStackAsync(@NotNull String item, @NotNull Map<String, Object> parameters){
+        return getItemStackAsync(ItemBridgeKey.parse(item), parameters);
+    }
+
+    @NotNull
+    public static CompletableFuture<ItemStack> getItemStackAsync(@NotNull ItemBridgeKey key){
+        return getItemStackAsync(key, ItemBridgeParameters.EMPTY);
+    }
+
+    @NotNull
+    public static CompletableFuture<ItemStack> getItemStackAsync(@NotNull ItemBridgeKey key, @NotNull Map<String, Object> parameters){
+        ItemBridge instance = instanceMap.get(key.getNamespace());
+        if(instance == null){return CompletableFuture.completedFuture(null);}
+
+        // the caller may change a mutable map before the main thread gets to it
+        ItemBridgeParameters params = ItemBridgeParameters.of(parameters);
+        if(Bukkit.isPrimaryThread() || isThreadSafe(instance.listeners)){
+            return CompletableFuture.completedFuture(getItemStack(key.getNamespace(), key.getItem(), params));
         }
-        return null;
+
+        ItemStack cached = prototypeCache.get(instance, key.getItem(), params);
+        if(cached != null){return CompletableFuture.completedFuture(cached);}
+
+        return onMainThread(() -> getItemStack(key.getNamespace(), key.getItem(), params));
     }
 
-    private static ItemBridgeKey getItemKey(ItemBridgeListenerPriority p, ItemStack stack){
-        List<ItemBridgeListenerWrapper> list = listenersByPriority.get(p);
-        if(list != null){
-            for(ItemBridgeListenerWrapper l : list){
-                String s = l.listener.getItemName(stack);
-                if(s != null){
-                    return new ItemBridgeKey(l.bridge, s);
-                }
+    /**
+     * Get the key for the given ItemStack from any thread. If the stack was already looked up, or every listener
+     * that could recognize it is thread-safe (see {@code ItemBridgeListener.isThreadSafe}), or this is called on the
+     * main thread, the key is found right away. Otherwise, it's found on the main thread, together with every other
+     * async lookup made during the same tick
+     * @param stack the ItemStack. A copy is used, so it's safe to change the stack afterwards
+     * @return a future for the key, as returned by {@code getItemKey}
+     */
+    @NotNull
+    public static CompletableFuture<ItemBridgeKey> getItemKeyAsync(@Nullable ItemStack stack){
+        if(stack == null){return CompletableFuture.completedFuture(null);}
+        if(Bukkit.isPrimaryThread()){return CompletableFuture.completedFuture(getItemKey(stack));}
+
+        ItemKeyCache.Entry cached = itemKeyCache.getIfPresent(stack);
+        if(cached != null && cached.hasKey()){return CompletableFuture.completedFuture(cached.getKey());}
+
+        boolean verifiesTag = ItemIdentityTag.isEnabled() && ItemIdentityTag.shouldVerify();
+        if(!verifiesTag && isThreadSafe(Arrays.asList(itemIndex.candidates(stack)))){
+            return CompletableFuture.completedFuture(getItemKey(stack));
+        }
+
+        ItemStack copy = stack.clone();
+        return onMainThread(() -> getItemKey(copy));
+    }
+
+    private static boolean isThreadSafe(Collection<ItemBridgeListenerWrapper> listeners){
+        for(ItemBridgeListenerWrapper l : listeners){
+            if(l != null && !l.threadSafe){
+                return false;
             }
         }
-        return null;
+        return true;
+    }
+
+    private static <T> CompletableFuture<T> onMainThread(Supplier<T> supplier){
+        return MainThreadBatcher.submit(supplier);
     }
 
     /**
@@ -393,24 +1001,126 @@ public class ItemBridge{
     @Nullable
     public static Map<String, Object> getItemParameters(@Nullable ItemStack stack){
         if(stack == null){return null;}
-        for(ItemBridgeListenerPriority p : ItemBridgeListenerPriority.values()){
-            Map<String, Object> params = getItemParameters(p, stack);
-            if(params != null){return params;}
+        if(ItemIdentityTag.isEnabled()){
+            // the tag only has a hash of the parameters, but it does say which plugin to ask
+            ItemIdentityTag.Tag tag = readTag(stack);
+            ItemBridge instance = tag == null ? null : instanceMap.get(tag.getKey().getNamespace());
+            if(instance != null){
+                for(ItemBridgeListenerWrapper l : instance.listeners){
+                    Map<String, Object> parameters = l.getParameters(stack);
+                    if(parameters != null){return parameters;}
+                }
+                return null;
+            }
         }
-        return null;
+        return itemKeyCache.getParameters(stack, ItemBridge::resolveItemParameters);
+    }
+
+    /**
+     * Clear the cache used by {@code getItemKey} and {@code getItemParameters}. The cache is cleared automatically
+     * whenever a listener is registered or removed, but if your listener starts identifying existing items
+     * differently (for example, after reloading your plugin's item configuration), you should call this
+     */
+    public static void clearItemKeyCache(){
+        itemKeyCache.invalidateAll();
+    }
+
+    /**
+     * Set the maximum number of distinct items remembered by {@code getItemKey} and {@code getItemParameters}
+     * @param size the maximum number of entries, or {@code 0} to disable the cache
+     */
+    public static void setItemKeyCacheSize(int size){
+        itemKeyCache.setMaxSize(size);
+    }
+
+    @NotNull
+    public static ItemBridgeCacheStats getItemKeyCacheStats(){
+        return itemKeyCache.getStats();
+    }
+
+    /**
+     * Turn per-listener call metrics on or off. While off, the only cost is one volatile read per listener call
+     */
+    public static void setMetricsEnabled(boolean enabled){
+        ListenerMetrics.setEnabled(enabled);
     }
 
-    private static Map<String, Object> getItemParameters(ItemBridgeListenerPriority p, ItemStack stack){
-        List<ItemBridgeListenerWrapper> list = listenersByPriority.get(p);
-        if(list != null){
-            for(ItemBridgeListenerWrapper l : list){
-                Map<String, Object> m = l.listener.getParameters(stack);
-                if(m != null){return m;}
+    public static boolean isMetricsEnabled(){
+        return ListenerMetrics.isEnabled();
+    }
+
+    /**
+     * Clear the call metrics of every registered listener
+     */
+    public static void resetMetrics(){
+        for(ItemBridgeListenerWrapper l : dispatch){
+            l.metrics.reset();
+        }
+    }
+
+    /**
+     * Turn the slow listener watchdog on or off. While on, every listener call that takes longer than the budget is
+     * logged (at most once a minute per listener, by default)
+     */
+    public static void setWatchdogEnabled(boolean enabled){
+        ListenerWatchdog.setEnabled(enabled);
+    }
+
+    public static boolean isWatchdogEnabled(){
+        return ListenerWatchdog.isEnabled();
+    }
+
+    /**
+     * Forget every slow call the watchdog has seen, and put demoted listeners back in their original order
+     */
+    public static void resetWatchdog(){
+        synchronized(REGISTRY_LOCK){
+            for(ItemBridgeListenerWrapper l : registeredListeners){
+                l.watchdog.reset();
+            }
+            compileDispatch();
+            itemKeyCache.invalidateAll();
+            blockCache.invalidateAll();
+        }
+    }
+
+    /**
+     * @return the call metrics of every registered listener, in the order ItemBridge calls them
+     */
+    @NotNull
+    public static List<ItemBridgeListenerStats> getListenerStats(){
+        List<ItemBridgeListenerStats> result = new ArrayList<>();
+        for(ItemBridgeListenerWrapper l : dispatch){
+            result.add(l.getStats());
+        }
+        return result;
+    }
+
+    private static ItemBridgeKey resolveItemKey(ItemStack stack){
+        for(ItemBridgeListenerWrapper l : itemIndex.candidates(stack)){
+            if(l == null){continue;}
+
+            String s = l.getItemName(stack);
+            if(s != null){
+                if(adaptiveOrdering){
+                    l.adaptiveHits.increment();
+                }
+                return new ItemBridgeKey(l.bridge, s);
             }
         }
         return null;
     }
 
+    private static Map<String, Object> resolveItemParameters(ItemStack stack){
+        for(ItemBridgeListenerWrapper l : itemIndex.candidates(stack)){
+            if(l == null){continue;}
+
+            Map<String, Object> parameters = l.getParameters(stack);
+            if(parameters != null){return parameters;}
+        }
+        return null;
+    }
+
     /**
      * Get the key for the block at the given location
      * @param location the location of the block
@@ -419,43 +1129,173 @@ public class ItemBridge{
      */
     @NotNull
     public static ItemBridgeKey getBlock(@NotNull Location location){
-        for(ItemBridgeListenerPriority p : ItemBridgeListenerPriority.values()){
-            List<ItemBridgeListenerWrapper> list = listenersByPriority.get(p);
-            if(list != null){
-                for(ItemBridgeListenerWrapper l : list){
-                    String s = l.listener.getBlock(location);
-                    if(s != null){
-                        return new ItemBridgeKey(l.bridge, s);
-                    }
-                }
+        if(blockCache.isEnabled()){
+            ItemBridgeKey key = blockCache.get(location, ItemBridge::resolveBlock).getKey();
+            return key == null ? new ItemBridgeKey("minecraft", location.getBlock().getType().name()) : key;
+        }
+
+        for(ItemBridgeListenerWrapper l : dispatch){
+            String s = l.getBlock(location);
+            if(s != null){
+                return new ItemBridgeKey(l.bridge, s);
             }
         }
         return new ItemBridgeKey("minecraft", location.getBlock().getType().name());
     }
 
-    public static boolean isBlock(@NotNull Location location, @NotNull String id){
-        for(ItemBridgeListenerPriority p : ItemBridgeListenerPriority.values()){
-            List<ItemBridgeListenerWrapper> list = listenersByPriority.get(p);
-            if(list != null){
-                for(ItemBridgeListenerWrapper l : list){
-                    if(l.listener.isBlock(location, id)){
-                        return true;
+    private static BlockKeyCache.Resolved resolveBlock(Location location){
+        ItemBridgeListenerWrapper[] listeners = dispatch;
+
+        ItemBridgeKey key = null;
+        for(ItemBridgeListenerWrapper l : listeners){
+            // vanilla blocks are always read from the world, so the cache only remembers that the block isn't custom
+            if(l.listener instanceof MinecraftItemBridge){break;}
+
+            String s = l.getBlock(location);
+            if(s != null){
+                key = new ItemBridgeKey(l.bridge, s);
+                break;
+            }
+        }
+
+        Map<String, Object> parameters = null;
+        for(ItemBridgeListenerWrapper l : listeners){
+            parameters = l.getBlockParameters(location);
+            if(parameters != null){break;}
+        }
+        return new BlockKeyCache.Resolved(key, parameters);
+    }
+
+    /**
+     * Enable or disable caching the results of {@code getBlock} and {@code getBlockParameters}. The cache is
+     * kept up to date when blocks are changed through ItemBridge, or placed, broken, burned, exploded, moved by
+     * pistons, formed, spread, flowed into, or changed by an entity. Changes that don't fire a block event, like
+     * {@code Block.setType} calls from other plugins or world edits, aren't seen. If your plugin changes custom blocks
+     * in any of those ways, call {@code invalidateBlockCache}
+     * @param enabled whether or not block lookups should be cached
+     */
+    public static void setBlockCacheEnabled(boolean enabled){
+        blockCache.setEnabled(enabled);
+    }
+
+    public static boolean isBlockCacheEnabled(){
+        return blockCache.isEnabled();
+    }
+
+    /**
+     * Forget the cached block at the given location
+     * @param location the location of the block
+     */
+    public static void invalidateBlockCache(@NotNull Location location){
+        blockCache.invalidate(location);
+    }
+
+    /**
+     * Forget every cached block in the given chunk
+     * @param chunk the chunk
+     */
+    public static void invalidateBlockCache(@NotNull Chunk chunk){
+        blockCache.invalidate(chunk);
+    }
+
+    /**
+     * Forget every cached block in the given world
+     * @param world the world
+     */
+    public static void invalidateBlockCache(@NotNull World world){
+        blockCache.invalidate(world);
+    }
+
+    /**
+     * Get the keys for the blocks at many locations at once. Each listener is asked about every location
+     * that a higher priority listener didn't claim in a single call
+     * @param locations the locations of the blocks
+     * @return a Map from each location to the ItemBridgeKey of its block, in the same order as {@code locations}.
+     * Vanilla Minecraft blocks are given as minecraft:TYPE, like in {@code getBlock}
+     */
+    @NotNull
+    public static Map<Location, ItemBridgeKey> getBlocks(@NotNull Collection<Location> locations){
+        Map<Location, ItemBridgeKey> found = new HashMap<>();
+        Set<Location> remaining = new LinkedHashSet<>(locations);
+        for(ItemBridgeListenerWrapper l : dispatch){
+            if(remaining.isEmpty()){break;}
+            claimBlocks(found, remaining, l, l.getBlocks(Collections.unmodifiableSet(new LinkedHashSet<>(remaining))));
+        }
+
+        Map<Location, ItemBridgeKey> result = new LinkedHashMap<>();
+        for(Location location : locations){
+            ItemBridgeKey key = found.get(location);
+            result.put(location, key == null ? new ItemBridgeKey("minecraft", location.getBlock().getType().name()) : key);
+        }
+        return result;
+    }
+
+    /**
+     * Get the keys of every custom block in the given chunk. Vanilla Minecraft blocks are left out
+     * @param chunk the chunk
+     * @return a Map from the location of each custom block in the chunk to its ItemBridgeKey
+     */
+    @NotNull
+    public static Map<Location, ItemBridgeKey> getCustomBlocks(@NotNull Chunk chunk){
+        Map<Location, ItemBridgeKey> found = new LinkedHashMap<>();
+        Set<Location> remaining = null;
+        for(ItemBridgeListenerWrapper l : dispatch){
+            if(l.listener instanceof MinecraftItemBridge){continue;}
+
+            Map<Location, String> blocks = l.getBlocksInChunk(chunk);
+            if(blocks == null){
+                if(remaining == null){
+                    remaining = getNonAirBlocks(chunk);
+                    remaining.removeAll(found.keySet());
+                }
+                if(remaining.isEmpty()){continue;}
+                blocks = l.getBlocks(Collections.unmodifiableSet(new LinkedHashSet<>(remaining)));
+            }
+            claimBlocks(found, remaining, l, blocks);
+        }
+        return found;
+    }
+
+    private static void claimBlocks(Map<Location, ItemBridgeKey> found, @Nullable Set<Location> remaining, ItemBridgeListenerWrapper l, Map<Location, String> blocks){
+        for(Map.Entry<Location, String> e : blocks.entrySet()){
+            if(e.getValue() != null && !found.containsKey(e.getKey())){
+                found.put(e.getKey(), new ItemBridgeKey(l.bridge, e.getValue()));
+                if(remaining != null){
+                    remaining.remove(e.getKey());
+                }
+            }
+        }
+    }
+
+    private static Set<Location> getNonAirBlocks(Chunk chunk){
+        Set<Location> locations = new LinkedHashSet<>();
+        int maxY = chunk.getWorld().getMaxHeight();
+        for(int x = 0; x < 16; x++){
+            for(int z = 0; z < 16; z++){
+                for(int y = 0; y < maxY; y++){
+                    Block block = chunk.getBlock(x, y, z);
+                    if(!block.getType().isAir()){
+                        locations.add(block.getLocation());
                     }
                 }
             }
         }
+        return locations;
+    }
+
+    public static boolean isBlock(@NotNull Location location, @NotNull String id){
+        for(ItemBridgeListenerWrapper l : dispatch){
+            if(l.isBlock(location, id)){
+                return true;
+            }
+        }
         return false;
     }
 
     public static boolean isBlock(@NotNull Location location, @NotNull String id, @NotNull Map<String, Object> parameters){
-        for(ItemBridgeListenerPriority p : ItemBridgeListenerPriority.values()){
-            List<ItemBridgeListenerWrapper> list = listenersByPriority.get(p);
-            if(list != null){
-                for(ItemBridgeListenerWrapper l : list){
-                    if(l.listener.isBlock(location, id, parameters)){
-                        return true;
-                    }
-                }
+        for(ItemBridgeListenerWrapper l : dispatch){
+            if(l.isBlock(location, id, parameters)){
+                return true;
             }
         }
         return false;
@@ -469,15 +1309,14 @@ public class ItemBridge{
      */
     @Nullable
     public static Map<String, Object> getBlockParameters(@NotNull Location location){
-        for(ItemBridgeListenerPriority p : ItemBridgeListenerPriority.values()){
-            List<ItemBridgeListenerWrapper> list = listenersByPriority.get(p);
-            if(list != null){
-                for(ItemBridgeListenerWrapper l : list){
-                    Map<String, Object> params = l.listener.getBlockParameters(location);
-                    if(params != null){
-                        return params;
-                    }
-                }
+        if(blockCache.isEnabled()){
+            return blockCache.get(location, ItemBridge::resolveBlock).getParameters();
+        }
+
+        for(ItemBridgeListenerWrapper l : dispatch){
+            Map<String, Object> params = l.getBlockParameters(location);
+            if(params != null){
+                return params;
             }
         }
         return null;
@@ -490,30 +1329,24 @@ public class ItemBridge{
      * returns {@code false}, you should fall back to your own code for removing the block, likely location.getBlock().setType(Material.AIR)
      */
     public static boolean removeBlock(@NotNull Location location){
-        for(ItemBridgeListenerPriority p : ItemBridgeListenerPriority.values()){
-            List<ItemBridgeListenerWrapper> list = listenersByPriority.get(p);
-            if(list != null){
-                for(ItemBridgeListenerWrapper l : list){
-                    if(l.listener.removeBlock(location)){
-                        return true;
-                    }
-                }
+        boolean removed = false;
+        for(ItemBridgeListenerWrapper l : dispatch){
+            if(l.removeBlock(location)){
+                removed = true;
+                break;
             }
         }
 
-        return false;
+        blockCache.invalidate(location);
+        return removed;
     }
 
     public static boolean setBlock(@NotNull Location location, @NotNull String key){
-        return setBlock(location, key, new HashMap<>());
+        return setBlock(location, key, ItemBridgeParameters.EMPTY);
     }
 
     public static boolean setBlock(@NotNull Location location, @NotNull String id, @Nullable Map<String, Object> parameters){
-        String[] split = id.split(":", 2);
-        if(split.length == 1){
-            return setBlock(location, "minecraft", id, parameters);
-        }
-        return setBlock(location, split[0], split[1], parameters);
+        return setBlock(location, ItemBridgeKey.parse(id), parameters);
     }
 
     public static boolean setBlock(@NotNull Location location, @NotNull ItemBridgeKey key){
@@ -540,13 +1373,17 @@ public class ItemBridge{
         ItemBridge instance = instanceMap.get(key.toLowerCase());
         if(instance == null){return false;}
 
-        if(parameters == null){parameters = new HashMap<>();}
-        for(ItemBridgeListener listener : instance.listeners){
-            if(listener.setBlock(location, id, parameters)){
-                return true;
+        if(parameters == null){parameters = ItemBridgeParameters.EMPTY;}
+        boolean set = false;
+        for(ItemBridgeListenerWrapper l : instance.listeners){
+            if(l.setBlock(location, id, parameters)){
+                set = true;
+                break;
             }
         }
-        return false;
+
+        blockCache.invalidate(location);
+        return set;
     }
 
     public Map<String, List<String>> getEnabledListeners(){
@@ -564,8 +1401,8 @@ public class ItemBridge{
         if(instance == null){return null;}
 
         List<String> available = new ArrayList<>();
-        for(ItemBridgeListener listener : instance.listeners){
-            available.addAll(listener.getAvailableItems());
+        for(ItemBridgeListenerWrapper l : instance.listeners){
+            available.addAll(l.listener.getAvailableItems());
         }
         return available;
     }
@@ -576,42 +1413,86 @@ public class ItemBridge{
         if(instance == null){return null;}
 
         List<String> available = new ArrayList<>();
-        for(ItemBridgeListener listener : instance.listeners){
-            available.addAll(listener.getAvailableBlocks());
+        for(ItemBridgeListenerWrapper l : instance.listeners){
+            available.addAll(l.listener.getAvailableBlocks());
         }
         return available;
     }
 
 
-    private static class ItemBridgeListenerWrapper{
-        private ItemBridgeListener listener;
-        private ItemBridge bridge;
-
-        public ItemBridgeListenerWrapper(ItemBridgeListener listener, ItemBridge bridge){
-            this.listener = listener;
-            this.bridge = bridge;
+    /**
+     * The listeners to ask about an ItemStack, by its material: the listeners whose items can have that material, in
+     * dispatch order. Materials no listener declared share a single array of the listeners that didn't declare any
+     */
+    private static class ItemIndex{
+        private final Map<Material, ItemBridgeListenerWrapper[]> byMaterial = new EnumMap<>(Material.class);
+        private final ItemBridgeListenerWrapper[] any;
+        private final boolean hasNamespaces;
+
+        private ItemIndex(ItemBridgeListenerWrapper[] dispatch){
+            List<ItemBridgeListenerWrapper> any = new ArrayList<>();
+            Set<Material> declared = EnumSet.noneOf(Material.class);
+            boolean hasNamespaces = false;
+            for(ItemBridgeListenerWrapper l : dispatch){
+                if(l.materials == null){
+                    any.add(l);
+                }
+                else{
+                    declared.addAll(l.materials);
+                }
+                hasNamespaces |= l.itemNamespace != null;
+            }
+            this.any = any.toArray(new ItemBridgeListenerWrapper[0]);
+            this.hasNamespaces = hasNamespaces;
+
+            for(Material m : declared){
+                List<ItemBridgeListenerWrapper> candidates = new ArrayList<>();
+                for(ItemBridgeListenerWrapper l : dispatch){
+                    if(l.canHaveMaterial(m)){
+                        candidates.add(l);
+                    }
+                }
+                byMaterial.put(m, candidates.toArray(new ItemBridgeListenerWrapper[0]));
+            }
         }
 
-        public ItemBridgeListener getListener(){
-            return listener;
+        /**
+         * @return the listeners to ask about the given stack. Listeners that declared a persistent data namespace the
+         * stack doesn't have are left as null, and must be skipped
+         */
+        private ItemBridgeListenerWrapper[] candidates(ItemStack stack){
+            ItemBridgeListenerWrapper[] candidates = byMaterial.get(stack.getType());
+            if(candidates == null){candidates = any;}
+            if(!hasNamespaces){return candidates;}
+
+            Set<String> namespaces = null;
+            ItemBridgeListenerWrapper[] filtered = null;
+            for(int i = 0; i < candidates.length; i++){
+                String namespace = candidates[i].itemNamespace;
+                if(namespace == null){continue;}
+
+                if(namespaces == null){
+                    namespaces = getNamespaces(stack);
+                }
+                if(!namespaces.contains(namespace)){
+                    if(filtered == null){filtered = candidates.clone();}
+                    filtered[i] = null;
+                }
+            }
+            return filtered == null ? candidates : filtered;
         }
 
-        public ItemBridge getBridge(){
-            return bridge;
-        }
+        private static Set<String> getNamespaces(ItemStack stack){
+            if(!stack.hasItemMeta()){return Collections.emptySet();}
 
-        @Override
-        public boolean equals(Object o){
-            if(this == o) return true;
-            if(o == null || getClass() != o.getClass()) return false;
-            ItemBridgeListenerWrapper that = (ItemBridgeListenerWrapper) o;
-            return Objects.equals(listener, that.listener) &&
-                    Objects.equals(bridge, that.bridge);
-        }
+            ItemMeta meta = stack.getItemMeta();
+            if(meta == null){return Collections.emptySet();}
 
-        @Override
-        public int hashCode(){
-            return Objects.hash(listener, bridge);
+            Set<String> namespaces = new HashSet<>();
+            for(NamespacedKey key : meta.getPersistentDataContainer().getKeys()){
+                namespaces.add(key.getNamespace());
+            }
+            return namespaces;
         }
     }
 }
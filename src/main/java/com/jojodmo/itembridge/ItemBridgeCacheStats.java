@@ -0,0 +1,54 @@
+package com.jojodmo.itembridge;
+
+/**
+ * A point-in-time snapshot of the counters for one of ItemBridge's internal caches
+ */
+public class ItemBridgeCacheStats{
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+    private final int maxSize;
+
+    ItemBridgeCacheStats(long hits, long misses, long evictions, int size, int maxSize){
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    public long getHits(){
+        return hits;
+    }
+
+    public long getMisses(){
+        return misses;
+    }
+
+    public long getEvictions(){
+        return evictions;
+    }
+
+    public int getSize(){
+        return size;
+    }
+
+    public int getMaxSize(){
+        return maxSize;
+    }
+
+    /**
+     * @return the fraction of lookups that were answered by the cache, between 0 and 1
+     */
+    public double getHitRate(){
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%d/%d entries, %d hits, %d misses (%.1f%%), %d evictions", size, maxSize, hits, misses, getHitRate() * 100, evictions);
+    }
+}
@@ -0,0 +1,143 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A resolved reference to an item. The first time the item is found, the handle remembers which listener
+ * provided it, and later calls go straight to that listener. The handle searches every listener again if the bound
+ * listener doesn't have the item, or after the owning plugin's listeners change. Misses are never remembered, so
+ * a handle for an item that doesn't exist yet starts working as soon as it does. Use {@code ItemBridge.resolve} to
+ * get a handle
+ */
+public class ItemBridgeHandle{
+
+    private final ItemBridgeKey key;
+    private volatile Binding binding = null;
+
+    ItemBridgeHandle(@NotNull ItemBridgeKey key){
+        this.key = key;
+    }
+
+    @NotNull
+    public ItemBridgeKey getKey(){
+        return key;
+    }
+
+    /**
+     * @return a new ItemStack for this item, or {@code null} if the item does not exist
+     */
+    @Nullable
+    public ItemStack create(){
+        return create(ItemBridgeParameters.EMPTY);
+    }
+
+    /**
+     * @param parameters the parameters for the item
+     * @return a new ItemStack for this item, or {@code null} if the item does not exist
+     */
+    @Nullable
+    public ItemStack create(@NotNull Map<String, Object> parameters){
+        Binding b = currentBinding();
+        if(b != null){
+            ItemStack cached = ItemBridge.getCachedItemStack(b.bridge, key.getItem(), parameters);
+            if(cached != null){return cached;}
+
+            ItemStack is = b.listener.fetchItemStack(key.getItem(), parameters);
+            if(is != null){return offer(b.bridge, b.listener, parameters, is);}
+        }
+
+        ItemBridge bridge = ItemBridge.getInstance(key.getNamespace());
+        if(bridge == null){return null;}
+
+        int version = bridge.getListenerVersion();
+        for(ItemBridgeListenerWrapper l : bridge.getListeners()){
+            if(b != null && l == b.listener){continue;}
+
+            ItemStack is = l.fetchItemStack(key.getItem(), parameters);
+            if(is != null){
+                binding = new Binding(bridge, l, version);
+                return offer(bridge, l, parameters, is);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param stack the ItemStack
+     * @return true iff stack is this item
+     */
+    public boolean matches(@Nullable ItemStack stack){
+        if(stack == null){return false;}
+
+        Binding b = currentBinding();
+        if(b != null && b.listener.isItem(stack, key.getItem())){return true;}
+
+        ItemBridge bridge = ItemBridge.getInstance(key.getNamespace());
+        if(bridge == null){return false;}
+
+        int version = bridge.getListenerVersion();
+        for(ItemBridgeListenerWrapper l : bridge.getListeners()){
+            if(b != null && l == b.listener){continue;}
+            if(!l.canHaveMaterial(stack.getType())){continue;}
+
+            if(l.isItem(stack, key.getItem())){
+                binding = new Binding(bridge, l, version);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true iff the item currently exists
+     */
+    public boolean exists(){
+        Binding b = currentBinding();
+        if(b != null && ItemBridge.isListed(b.bridge, b.listener.listener, key.getItem())){return true;}
+
+        ItemBridge bridge = ItemBridge.getInstance(key.getNamespace());
+        if(bridge == null){return false;}
+
+        int version = bridge.getListenerVersion();
+        for(ItemBridgeListenerWrapper l : bridge.getListeners()){
+            if(ItemBridge.isListed(bridge, l.listener, key.getItem())){
+                binding = new Binding(bridge, l, version);
+                return true;
+            }
+        }
+
+        // listeners don't have to list their items, so the only way to know for sure is to ask for it
+        return create() != null;
+    }
+
+    private Binding currentBinding(){
+        Binding b = binding;
+        if(b == null){return null;}
+
+        ItemBridge bridge = ItemBridge.getInstance(key.getNamespace());
+        return bridge == b.bridge && bridge != null && bridge.getListenerVersion() == b.version ? b : null;
+    }
+
+    private ItemStack offer(ItemBridge bridge, ItemBridgeListenerWrapper listener, Map<String, Object> parameters, ItemStack stack){
+        stack = ItemBridge.tagItemStack(bridge, key.getItem(), parameters, stack);
+        ItemBridge.offerCachedItemStack(bridge, listener.listener, key.getItem(), parameters, stack);
+        return stack;
+    }
+
+    private static class Binding{
+        private final ItemBridge bridge;
+        private final ItemBridgeListenerWrapper listener;
+        private final int version;
+
+        private Binding(ItemBridge bridge, ItemBridgeListenerWrapper listener, int version){
+            this.bridge = bridge;
+            this.listener = listener;
+            this.version = version;
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package com.jojodmo.itembridge;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
 public class ItemBridgeKey{
 
-    private String namespace;
-    private String item;
+    private static final int MAX_INTERNED = 16384;
+    private static final BoundedCache<String, ItemBridgeKey> interned = new BoundedCache<>(MAX_INTERNED);
+
+    private final String namespace;
+    private final String item;
+    private final String string;
+    private final int hash;
 
     public ItemBridgeKey(ItemBridge bridge, String item){
         this(bridge.defaultKey, item);
@@ -11,10 +21,32 @@ public class ItemBridgeKey{
 
     public ItemBridgeKey(String namespace, String item){
         if(namespace.contains(":")){throw new IllegalArgumentException("key cannot contain a colon. Tried to use the key '" + namespace + "'");}
-        this.namespace = namespace;
+        this.namespace = namespace.toLowerCase(Locale.ROOT);
         this.item = item;
+        this.string = this.namespace + ":" + item;
+        this.hash = string.hashCode();
+    }
+
+    /**
+     * Parse a String in the format PLUGIN:ITEM_NAME_HERE. Keys that are parsed often are remembered, so parsing
+     * the same String again returns the same ItemBridgeKey instance without allocating anything
+     * @param key the String to parse. If PLUGIN isn't present (eg. "GRASS_BLOCK"), the namespace will be "minecraft"
+     * @return the ItemBridgeKey for the given String, or {@code null} if {@code key} is {@code null}
+     */
+    @Nullable
+    public static ItemBridgeKey parse(@Nullable String key){
+        if(key == null){return null;}
+
+        ItemBridgeKey parsed = interned.get(key);
+        if(parsed == null){
+            int colon = key.indexOf(':');
+            parsed = colon < 0 ? new ItemBridgeKey("minecraft", key) : new ItemBridgeKey(key.substring(0, colon), key.substring(colon + 1));
+            interned.put(key, parsed);
+        }
+        return parsed;
     }
 
+    @NotNull
     public String getNamespace(){
         return namespace;
     }
@@ -23,8 +55,21 @@ public class ItemBridgeKey{
         return item;
     }
 
+    @Override
+    public boolean equals(Object o){
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        ItemBridgeKey that = (ItemBridgeKey) o;
+        return hash == that.hash && string.equals(that.string);
+    }
+
+    @Override
+    public int hashCode(){
+        return hash;
+    }
+
     @Override
     public String toString(){
-        return namespace + ":" + item;
+        return string;
     }
 }
@@ -1,5 +1,6 @@
 package com.jojodmo.itembridge;
 
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
@@ -46,6 +47,39 @@ public interface ItemBridgeListener{
         return fetchItemStack(item);
     }
 
+    /**
+     * Method to declare whether ItemBridge may keep a copy of the ItemStack returned by {@code fetchItemStack}
+     * for the given item and parameters, and hand out clones of it instead of calling {@code fetchItemStack} again.
+     * Only return {@code true} if building the same item twice always gives equal ItemStacks. If the definition of
+     * a cacheable item changes, call {@code ItemBridge.invalidateItemStackCache} with your plugin's key
+     * @param item the name of the item in this plugin
+     * @param parameters the parameters for the item
+     * @return {@code true} if the result of {@code fetchItemStack(item, parameters)} can be cached, {@code false} otherwise
+     */
+    default boolean isCacheable(@NotNull String item, @NotNull Map<String, Object> parameters){
+        return false;
+    }
+
+    /**
+     * Method to fetch several items in this plugin at once. Override this if your items come from a database or
+     * registry that can look up many items faster than one at a time
+     * @param items the names of the items in this plugin
+     * @param parameters (optional) the parameters used for every item
+     * @return a Map from the name of each item that exists in this plugin to its ItemStack. Items that don't exist
+     * should be left out
+     */
+    @NotNull
+    default Map<String, ItemStack> fetchItemStacks(@NotNull Collection<String> items, @NotNull Map<String, Object> parameters){
+        Map<String, ItemStack> fetched = new HashMap<>();
+        for(String item : items){
+            ItemStack is = fetchItemStack(item, parameters);
+            if(is != null){
+                fetched.put(item, is);
+            }
+        }
+        return fetched;
+    }
+
     @Nullable
     default ItemStack fetchItemStack(@NotNull String item, @NotNull Map<String, Object> parameters, int amount){
         ItemStack fetched = fetchItemStack(item, parameters);
@@ -79,26 +113,43 @@ public interface ItemBridgeListener{
         return null;
     }
 
-    default boolean isItem(@NotNull ItemStack stack, @NotNull String item, @NotNull Map<String, Object> parameters){
-        if(isItem(stack, item)){
-            Map<String, Object> current = getParameters(stack);
-            if(current == null){return parameters.isEmpty();}
-
-            for(Map.Entry<String, Object> param : parameters.entrySet()){
-                if(!Objects.deepEquals(param.getValue(), current.get(param.getKey()))){
-                    return false;
-                }
-            }
+    /**
+     * The materials this plugin's items can have. ItemBridge only calls {@code getItemName} and {@code getParameters}
+     * for ItemStacks of these materials, so returning the few materials your items use makes reverse lookups faster.
+     * This is called once, when the listener is registered
+     * @return the materials of this plugin's items, or {@code null} if they can have any material
+     */
+    @Nullable
+    default Set<Material> getItemMaterials(){
+        return null;
+    }
 
-            for(Map.Entry<String, Object> param : current.entrySet()){
-                if(!Objects.deepEquals(param.getValue(), parameters.get(param.getKey()))){
-                    return false;
-                }
-            }
-        }
+    /**
+     * Whether or not this listener's item methods ({@code fetchItemStack}, {@code getItemName}, {@code getParameters},
+     * and {@code isItem}) can be called from any thread. If they can, {@code ItemBridge.getItemStackAsync} and
+     * {@code ItemBridge.getItemKeyAsync} call them right away on the caller's thread, instead of on the main thread
+     * @return {@code true} if the item methods are thread-safe, {@code false} otherwise
+     */
+    default boolean isThreadSafe(){
         return false;
     }
 
+    /**
+     * The namespace of the persistent data keys this plugin puts on all of its items. ItemBridge only calls
+     * {@code getItemName} and {@code getParameters} for ItemStacks that have a persistent data key in this namespace.
+     * This is called once, when the listener is registered
+     * @return the namespace (usually the lowercase name of your plugin), or {@code null} if not all of this plugin's
+     * items have persistent data
+     */
+    @Nullable
+    default String getItemNamespace(){
+        return null;
+    }
+
+    default boolean isItem(@NotNull ItemStack stack, @NotNull String item, @NotNull Map<String, Object> parameters){
+        return isItem(stack, item) && ItemBridgeParameters.matches(parameters, getParameters(stack));
+    }
+
     /**
      * Method to check whether or not an ItemStack is from this plugin and has the name {@code item}
      * @param stack the ItemStack
@@ -156,6 +207,38 @@ public interface ItemBridgeListener{
         return null;
     }
 
+    /**
+     * Method to fetch the ids of the blocks at many locations at once. Override this if your plugin can look up
+     * many blocks faster than one at a time
+     * @param locations the locations of the blocks
+     * @return a Map from each location whose block was set by this plugin to the ID of that block. Locations that
+     * weren't set by this plugin should be left out
+     */
+    @NotNull
+    default Map<Location, String> getBlocks(@NotNull Collection<Location> locations){
+        Map<Location, String> blocks = new HashMap<>();
+        for(Location location : locations){
+            String id = getBlock(location);
+            if(id != null){
+                blocks.put(location, id);
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Method to fetch the ids of every block in the given chunk that was set by this plugin. Override this if your
+     * plugin keeps track of its blocks per chunk. If this returns {@code null}, ItemBridge falls back to calling
+     * {@code getBlocks} with every non-air block in the chunk, which is much slower
+     * @param chunk the chunk
+     * @return a Map from the location of each block in this chunk that was set by this plugin to the ID of that block,
+     * or {@code null} if this plugin can't list its blocks by chunk
+     */
+    @Nullable
+    default Map<Location, String> getBlocksInChunk(@NotNull Chunk chunk){
+        return null;
+    }
+
     @Nullable
     default Map<String, Object> getBlockParameters(@NotNull Location location){
         return null;
@@ -173,22 +256,6 @@ public interface ItemBridgeListener{
     }
 
     default boolean isBlock(@NotNull Location location, @NotNull String id, @NotNull Map<String, Object> parameters){
-        if(isBlock(location, id)){
-            Map<String, Object> current = getBlockParameters(location);
-            if(current == null){return parameters.isEmpty();}
-
-            for(Map.Entry<String, Object> param : parameters.entrySet()){
-                if(!Objects.deepEquals(param.getValue(), current.get(param.getKey()))){
-                    return false;
-                }
-            }
-
-            for(Map.Entry<String, Object> param : current.entrySet()){
-                if(!Objects.deepEquals(param.getValue(), parameters.get(param.getKey()))){
-                    return false;
-                }
-            }
-        }
-        return false;
+        return isBlock(location, id) && ItemBridgeParameters.matches(parameters, getBlockParameters(location));
     }
 }
@@ -0,0 +1,163 @@
+package com.jojodmo.itembridge;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A point-in-time snapshot of how often, and how quickly, a single registered listener answered ItemBridge's calls.
+ * The numbers only grow while metrics are enabled
+ */
+public class ItemBridgeListenerStats{
+
+    private final String namespace;
+    private final String listenerClass;
+    private final ItemBridgeListenerPriority priority;
+    private final long slowCalls;
+    private final boolean demoted;
+    private final List<CallStats> calls;
+
+    ItemBridgeListenerStats(String namespace, String listenerClass, ItemBridgeListenerPriority priority, long slowCalls, boolean demoted, CallStats[] calls){
+        this.namespace = namespace;
+        this.listenerClass = listenerClass;
+        this.priority = priority;
+        this.slowCalls = slowCalls;
+        this.demoted = demoted;
+        this.calls = Collections.unmodifiableList(Arrays.asList(calls));
+    }
+
+    /**
+     * @return the default key of the plugin that registered the listener
+     */
+    @NotNull
+    public String getNamespace(){
+        return namespace;
+    }
+
+    @NotNull
+    public String getListenerClass(){
+        return listenerClass;
+    }
+
+    @NotNull
+    public ItemBridgeListenerPriority getPriority(){
+        return priority;
+    }
+
+    /**
+     * @return how many calls the watchdog has seen go over the time budget
+     */
+    public long getSlowCalls(){
+        return slowCalls;
+    }
+
+    /**
+     * @return whether or not the watchdog moved this listener to the end of its priority
+     */
+    public boolean isDemoted(){
+        return demoted;
+    }
+
+    /**
+     * @return the stats for each listener method ItemBridge measures
+     */
+    @NotNull
+    public List<CallStats> getCalls(){
+        return calls;
+    }
+
+    /**
+     * @param method the name of the listener method, like fetchItemStack
+     */
+    @Nullable
+    public CallStats getCall(@NotNull String method){
+        for(CallStats call : calls){
+            if(call.getMethod().equals(method)){
+                return call;
+            }
+        }
+        return null;
+    }
+
+    public long getTotalCalls(){
+        long total = 0;
+        for(CallStats call : calls){
+            total += call.getCalls();
+        }
+        return total;
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder sb = new StringBuilder(namespace).append(" (").append(listenerClass).append(", ").append(priority).append(demoted ? ", demoted" : "").append(")");
+        if(slowCalls > 0){
+            sb.append("; ").append(slowCalls).append(" slow calls");
+        }
+        for(CallStats call : calls){
+            if(call.getCalls() > 0){
+                sb.append("; ").append(call);
+            }
+        }
+        return sb.toString();
+    }
+
+    public static class CallStats{
+        private final String method;
+        private final long calls;
+        private final long hits;
+        private final long meanNanos;
+        private final long p50Nanos;
+        private final long p99Nanos;
+
+        CallStats(String method, long calls, long hits, long meanNanos, long p50Nanos, long p99Nanos){
+            this.method = method;
+            this.calls = calls;
+            this.hits = hits;
+            this.meanNanos = meanNanos;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+        }
+
+        @NotNull
+        public String getMethod(){
+            return method;
+        }
+
+        public long getCalls(){
+            return calls;
+        }
+
+        /**
+         * @return how many of the calls returned an item, block, or true
+         */
+        public long getHits(){
+            return hits;
+        }
+
+        public long getMeanNanos(){
+            return meanNanos;
+        }
+
+        /**
+         * @return an upper bound on the median latency. Latencies are recorded in power-of-two buckets
+         */
+        public long getP50Nanos(){
+            return p50Nanos;
+        }
+
+        /**
+         * @return an upper bound on the 99th percentile latency. Latencies are recorded in power-of-two buckets
+         */
+        public long getP99Nanos(){
+            return p99Nanos;
+        }
+
+        @Override
+        public String toString(){
+            return String.format("%s: %d calls, %d hits, mean %.1fus, p50 <%.1fus, p99 <%.1fus", method, calls, hits, meanNanos / 1000.0, p50Nanos / 1000.0, p99Nanos / 1000.0);
+        }
+    }
+}
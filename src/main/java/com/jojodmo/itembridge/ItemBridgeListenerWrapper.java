@@ -0,0 +1,246 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A registered listener, together with the ItemBridge it was registered to. Every item and block lookup ItemBridge
+ * makes through a listener goes through here, so the calls can be measured when metrics are enabled. Listing the
+ * available items and blocks for the catalog is the only thing that calls the listener directly
+ */
+class ItemBridgeListenerWrapper{
+    final ItemBridgeListener listener;
+    final ItemBridge bridge;
+    final ItemBridgeListenerPriority priority;
+    // the materials and persistent data namespace the listener's items can have, or null for any
+    final Set<Material> materials;
+    final String itemNamespace;
+    final boolean threadSafe;
+    // answers for every stack (like the minecraft listener), so it always goes last in its priority
+    final boolean catchAll;
+    final ListenerMetrics metrics = new ListenerMetrics();
+    final ListenerWatchdog watchdog = new ListenerWatchdog();
+
+    // items recognized since the last adaptive reorder, and the decayed total the order is based on (guarded by REGISTRY_LOCK)
+    final LongAdder adaptiveHits = new LongAdder();
+    double adaptiveScore = 0;
+
+    private static volatile boolean timed = false;
+
+    /**
+     * Listener calls are timed whenever metrics or the watchdog need the time. Call this when either is turned on or off
+     */
+    static void updateTiming(){
+        timed = ListenerMetrics.isEnabled() || ListenerWatchdog.isEnabled();
+    }
+
+    ItemBridgeListenerWrapper(ItemBridgeListener listener, ItemBridge bridge){
+        this.listener = listener;
+        this.bridge = bridge;
+        this.priority = listener.getPriority();
+
+        Set<Material> materials = listener.getItemMaterials();
+        if(materials != null){
+            Set<Material> copy = EnumSet.noneOf(Material.class);
+            copy.addAll(materials);
+            materials = Collections.unmodifiableSet(copy);
+        }
+        this.materials = materials;
+
+        String namespace = listener.getItemNamespace();
+        this.itemNamespace = namespace == null ? null : namespace.toLowerCase(Locale.ROOT);
+        this.threadSafe = listener.isThreadSafe();
+        this.catchAll = listener instanceof MinecraftItemBridge;
+    }
+
+    /**
+     * @return whether or not the listener's items can have the given material
+     */
+    boolean canHaveMaterial(Material material){
+        return materials == null || materials.contains(material);
+    }
+
+    public ItemBridgeListener getListener(){
+        return listener;
+    }
+
+    public ItemBridge getBridge(){
+        return bridge;
+    }
+
+    ItemStack fetchItemStack(String item, Map<String, Object> parameters){
+        if(!timed){return listener.fetchItemStack(item, mutable(parameters));}
+
+        long start = System.nanoTime();
+        ItemStack is = listener.fetchItemStack(item, mutable(parameters));
+        record(ListenerMetrics.Call.FETCH_ITEM_STACK, start, is != null);
+        return is;
+    }
+
+    Map<String, ItemStack> fetchItemStacks(Collection<String> items, Map<String, Object> parameters){
+        if(!timed){return listener.fetchItemStacks(items, mutable(parameters));}
+
+        long start = System.nanoTime();
+        Map<String, ItemStack> fetched = listener.fetchItemStacks(items, mutable(parameters));
+        record(ListenerMetrics.Call.FETCH_ITEM_STACK, start, fetched != null && !fetched.isEmpty());
+        return fetched;
+    }
+
+    String getItemName(ItemStack stack){
+        if(!timed){return listener.getItemName(stack);}
+
+        long start = System.nanoTime();
+        String name = listener.getItemName(stack);
+        record(ListenerMetrics.Call.GET_ITEM_NAME, start, name != null);
+        return name;
+    }
+
+    Map<String, Object> getParameters(ItemStack stack){
+        if(!timed){return listener.getParameters(stack);}
+
+        long start = System.nanoTime();
+        Map<String, Object> parameters = listener.getParameters(stack);
+        record(ListenerMetrics.Call.GET_PARAMETERS, start, parameters != null);
+        return parameters;
+    }
+
+    boolean isItem(ItemStack stack, String item){
+        if(!timed){return listener.isItem(stack, item);}
+
+        long start = System.nanoTime();
+        boolean is = listener.isItem(stack, item);
+        record(ListenerMetrics.Call.IS_ITEM, start, is);
+        return is;
+    }
+
+    boolean isItem(ItemStack stack, String item, Map<String, Object> parameters){
+        if(!timed){return listener.isItem(stack, item, mutable(parameters));}
+
+        long start = System.nanoTime();
+        boolean is = listener.isItem(stack, item, mutable(parameters));
+        record(ListenerMetrics.Call.IS_ITEM, start, is);
+        return is;
+    }
+
+    String getBlock(Location location){
+        if(!timed){return listener.getBlock(location);}
+
+        long start = System.nanoTime();
+        String block = listener.getBlock(location);
+        record(ListenerMetrics.Call.GET_BLOCK, start, block != null);
+        return block;
+    }
+
+    Map<Location, String> getBlocks(Collection<Location> locations){
+        if(!timed){return listener.getBlocks(locations);}
+
+        long start = System.nanoTime();
+        Map<Location, String> blocks = listener.getBlocks(locations);
+        record(ListenerMetrics.Call.GET_BLOCK, start, blocks != null && !blocks.isEmpty());
+        return blocks;
+    }
+
+    Map<Location, String> getBlocksInChunk(Chunk chunk){
+        if(!timed){return listener.getBlocksInChunk(chunk);}
+
+        long start = System.nanoTime();
+        Map<Location, String> blocks = listener.getBlocksInChunk(chunk);
+        record(ListenerMetrics.Call.GET_BLOCK, start, blocks != null && !blocks.isEmpty());
+        return blocks;
+    }
+
+    Map<String, Object> getBlockParameters(Location location){
+        if(!timed){return listener.getBlockParameters(location);}
+
+        long start = System.nanoTime();
+        Map<String, Object> parameters = listener.getBlockParameters(location);
+        record(ListenerMetrics.Call.GET_BLOCK_PARAMETERS, start, parameters != null);
+        return parameters;
+    }
+
+    boolean isBlock(Location location, String id){
+        if(!timed){return listener.isBlock(location, id);}
+
+        long start = System.nanoTime();
+        boolean is = listener.isBlock(location, id);
+        record(ListenerMetrics.Call.IS_BLOCK, start, is);
+        return is;
+    }
+
+    boolean isBlock(Location location, String id, Map<String, Object> parameters){
+        if(!timed){return listener.isBlock(location, id, mutable(parameters));}
+
+        long start = System.nanoTime();
+        boolean is = listener.isBlock(location, id, mutable(parameters));
+        record(ListenerMetrics.Call.IS_BLOCK, start, is);
+        return is;
+    }
+
+    boolean setBlock(Location location, String id, Map<String, Object> parameters){
+        if(!timed){return listener.setBlock(location, id, mutable(parameters));}
+
+        long start = System.nanoTime();
+        boolean set = listener.setBlock(location, id, mutable(parameters));
+        record(ListenerMetrics.Call.SET_BLOCK, start, set);
+        return set;
+    }
+
+    boolean removeBlock(Location location){
+        if(!timed){return listener.removeBlock(location);}
+
+        long start = System.nanoTime();
+        boolean removed = listener.removeBlock(location);
+        record(ListenerMetrics.Call.REMOVE_BLOCK, start, removed);
+        return removed;
+    }
+
+    /**
+     * Listeners have always been handed parameters they're free to modify, so ItemBridge's own immutable parameters
+     * (including {@code ItemBridgeParameters.EMPTY}) are copied into a new map before they're passed on
+     */
+    static Map<String, Object> mutable(Map<String, Object> parameters){
+        return parameters instanceof ItemBridgeParameters ? new HashMap<>(parameters) : parameters;
+    }
+
+    private void record(ListenerMetrics.Call call, long start, boolean hit){
+        long end = System.nanoTime();
+        long elapsed = end - start;
+        if(ListenerMetrics.isEnabled()){
+            metrics.record(call, elapsed, hit);
+        }
+        if(ListenerWatchdog.isEnabled()){
+            watchdog.check(this, call, elapsed, end);
+        }
+    }
+
+    /**
+     * @return the measured calls to this listener
+     */
+    ItemBridgeListenerStats getStats(){
+        ListenerMetrics.Call[] calls = ListenerMetrics.Call.values();
+        ItemBridgeListenerStats.CallStats[] stats = new ItemBridgeListenerStats.CallStats[calls.length];
+        for(int i = 0; i < calls.length; i++){
+            stats[i] = metrics.snapshot(calls[i]);
+        }
+        return new ItemBridgeListenerStats(bridge.defaultKey, listener.getClass().getName(), priority, watchdog.getSlowCalls(), watchdog.isDemoted(), stats);
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        ItemBridgeListenerWrapper that = (ItemBridgeListenerWrapper) o;
+        return Objects.equals(listener, that.listener) &&
+                Objects.equals(bridge, that.bridge);
+    }
+
+    @Override
+    public int hashCode(){
+        return Objects.hash(listener, bridge);
+    }
+}
@@ -0,0 +1,118 @@
+package com.jojodmo.itembridge;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * An immutable map of item parameters. The hash code is computed once, so it can be used as a cache key, and
+ * {@code EMPTY} can be passed wherever an item has no parameters instead of allocating a new map. Listeners never
+ * see this type: they're always handed a mutable copy. Note that the values themselves aren't copied, so don't
+ * modify a value after creating the parameters
+ */
+public final class ItemBridgeParameters extends AbstractMap<String, Object>{
+
+    public static final ItemBridgeParameters EMPTY = new ItemBridgeParameters(Collections.emptyMap());
+
+    private final Map<String, Object> map;
+    private final int hash;
+
+    private ItemBridgeParameters(Map<String, Object> map){
+        this.map = map;
+        this.hash = map.hashCode();
+    }
+
+    /**
+     * @param parameters the parameters to copy (optional)
+     * @return immutable parameters with the same entries, which is {@code parameters} itself if it's already
+     * an ItemBridgeParameters, and {@code EMPTY} if it's null or empty
+     */
+    @NotNull
+    public static ItemBridgeParameters of(@Nullable Map<String, Object> parameters){
+        if(parameters instanceof ItemBridgeParameters){return (ItemBridgeParameters) parameters;}
+        if(parameters == null || parameters.isEmpty()){return EMPTY;}
+        return new ItemBridgeParameters(Collections.unmodifiableMap(new HashMap<>(parameters)));
+    }
+
+    @NotNull
+    public static ItemBridgeParameters of(@NotNull String key, @Nullable Object value){
+        return new ItemBridgeParameters(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * @return a copy of these parameters, with the given parameter added or replaced
+     */
+    @NotNull
+    public ItemBridgeParameters with(@NotNull String key, @Nullable Object value){
+        Map<String, Object> copy = new HashMap<>(map);
+        copy.put(key, value);
+        return new ItemBridgeParameters(Collections.unmodifiableMap(copy));
+    }
+
+    @Override
+    public int size(){
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty(){
+        return map.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key){
+        return map.containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key){
+        return map.get(key);
+    }
+
+    @Override
+    public @NotNull Set<Entry<String, Object>> entrySet(){
+        return map.entrySet();
+    }
+
+    /**
+     * Whether or not the given parameters have the same entries as these, comparing array values by their contents.
+     * Like {@code ItemBridgeListener.isItem}, a parameter that's set to {@code null} counts the same as a missing one
+     */
+    public boolean matches(@Nullable Map<String, Object> other){
+        return matches(this, other);
+    }
+
+    /**
+     * @return whether or not both maps have the same entries, comparing array values by their contents. A key that's
+     * mapped to {@code null} matches a missing key, and {@code null} matches an empty map
+     */
+    static boolean matches(@Nullable Map<String, Object> a, @Nullable Map<String, Object> b){
+        if(a == b){return true;}
+        if(a == null){a = Collections.emptyMap();}
+        if(b == null){b = Collections.emptyMap();}
+
+        for(Entry<String, Object> e : a.entrySet()){
+            if(!Objects.deepEquals(e.getValue(), b.get(e.getKey()))){return false;}
+        }
+        for(Entry<String, Object> e : b.entrySet()){
+            if(!a.containsKey(e.getKey()) && e.getValue() != null){return false;}
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if(this == o) return true;
+        if(o instanceof ItemBridgeParameters){
+            ItemBridgeParameters that = (ItemBridgeParameters) o;
+            return hash == that.hash && map.equals(that.map);
+        }
+        return map.equals(o);
+    }
+
+    @Override
+    public int hashCode(){
+        return hash;
+    }
+}
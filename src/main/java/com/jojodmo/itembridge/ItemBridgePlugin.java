@@ -3,10 +3,18 @@ package com.jojodmo.itembridge;
 import org.bukkit.*;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 public class ItemBridgePlugin extends JavaPlugin{
 
     static ItemBridgePlugin that;
@@ -23,16 +31,80 @@ public class ItemBridgePlugin extends JavaPlugin{
     @Override
     public void onEnable(){
         that = this;
+        loadConfig();
+        boolean fromSnapshot = getConfig().getBoolean("catalog.snapshot") && ItemBridge.loadCatalogSnapshot(getCatalogSnapshotFile());
         minecraftBridge = new MinecraftItemBridge(this);
         savedBridge = new SavedItemBridge(this);
+        SavedItemBridge.preload();
+        Bukkit.getPluginManager().registerEvents(new BlockCacheListener(this), this);
+        ItemBridgeStats.register();
+        long reorderTicks = Math.max(1, getConfig().getLong("adaptive-ordering.interval-seconds")) * 20;
+        Bukkit.getScheduler().runTaskTimerAsynchronously(this, ItemBridge::updateAdaptiveOrder, reorderTicks, reorderTicks);
+        if(fromSnapshot){
+            // the snapshot answers until every listener has listed its items in the background
+            CatalogReconciler.start(this);
+        }
+        else{
+            // other plugins register their listeners while they enable, so list their items again once every plugin is enabled
+            Bukkit.getScheduler().runTask(this, () -> ItemBridge.refreshCatalog());
+        }
         isEnabled = true;
         Bukkit.getConsoleSender().sendMessage("[ItemBridge] ItemBridge v" + getDescription().getVersion() + " by jojodmo successfully enabled!");
 
     }
 
+    private File getCatalogSnapshotFile(){
+        return new File(getDataFolder(), "catalog.dat");
+    }
+
+    private void loadConfig(){
+        FileConfiguration config = getConfig();
+        config.addDefault("cache.item-keys.size", ItemKeyCache.DEFAULT_SIZE);
+        config.addDefault("cache.item-stacks.size", ItemPrototypeCache.DEFAULT_SIZE);
+        config.addDefault("cache.item-stacks.ttl-minutes", ItemPrototypeCache.DEFAULT_TTL_MINUTES);
+        config.addDefault("cache.blocks.enabled", false);
+        config.addDefault("catalog.snapshot", true);
+        config.addDefault("metrics.enabled", false);
+        config.addDefault("adaptive-ordering.enabled", false);
+        config.addDefault("adaptive-ordering.interval-seconds", 30);
+        config.addDefault("identity-tag.enabled", false);
+        config.addDefault("identity-tag.verify", false);
+        config.addDefault("watchdog.enabled", false);
+        config.addDefault("watchdog.budget-ms", ListenerWatchdog.DEFAULT_BUDGET_MILLIS);
+        config.addDefault("watchdog.log-interval-seconds", ListenerWatchdog.DEFAULT_LOG_INTERVAL_SECONDS);
+        config.addDefault("watchdog.demote", false);
+        config.addDefault("watchdog.demote-after", ListenerWatchdog.DEFAULT_DEMOTE_AFTER);
+        config.addDefault("saves.storage", "yaml");
+        config.addDefault("saves.cache.size", SavedItemBridge.DEFAULT_CACHE_SIZE);
+        config.addDefault("saves.cache.missing-size", SavedItemBridge.DEFAULT_MISSING_CACHE_SIZE);
+        config.addDefault("saves.cache.missing-ttl-seconds", SavedItemBridge.DEFAULT_MISSING_TTL_SECONDS);
+        config.options().copyDefaults(true);
+        saveConfig();
+
+        ItemBridge.setItemKeyCacheSize(config.getInt("cache.item-keys.size"));
+        ItemBridge.setItemStackCacheSize(config.getInt("cache.item-stacks.size"));
+        ItemBridge.setItemStackCacheTimeToLive(config.getLong("cache.item-stacks.ttl-minutes"), TimeUnit.MINUTES);
+        ItemBridge.setBlockCacheEnabled(config.getBoolean("cache.blocks.enabled"));
+        ItemBridge.setMetricsEnabled(config.getBoolean("metrics.enabled"));
+        ListenerWatchdog.configure(config.getDouble("watchdog.budget-ms"), config.getLong("watchdog.log-interval-seconds"), config.getBoolean("watchdog.demote"), config.getInt("watchdog.demote-after"));
+        ItemBridge.setWatchdogEnabled(config.getBoolean("watchdog.enabled"));
+        ItemBridge.setAdaptiveOrderingEnabled(config.getBoolean("adaptive-ordering.enabled"));
+        ItemIdentityTag.configure(this, config.getBoolean("identity-tag.enabled"), config.getBoolean("identity-tag.verify"));
+        SavedItemBridge.configureCache(config.getInt("saves.cache.size"), config.getInt("saves.cache.missing-size"), config.getLong("saves.cache.missing-ttl-seconds"));
+    }
+
     @Override
     public void onDisable(){
         isEnabled = false;
+        // finish the async lookups that were waiting for the next tick
+        MainThreadBatcher.drain();
+        if(getConfig().getBoolean("catalog.snapshot")){
+            ItemBridge.saveCatalogSnapshot(getCatalogSnapshotFile());
+        }
+        ItemBridge.cancelDeferredIndexing();
+        ItemBridge.setBlockCacheEnabled(false);
+        ItemBridgeStats.unregister();
+        SavedItemBridge.shutdown();
         minecraftBridge = null;
         savedBridge = null;
         that = null;
@@ -46,7 +118,7 @@ public class ItemBridgePlugin extends JavaPlugin{
                 return sendInfo(sender);
             }
             else if(args[0].toLowerCase().matches("^help|\\?$")){
-                sendMessage(sender, "Usage: /" + label + " <get/give/save/drop/plugin>");
+                sendMessage(sender, "Usage: /" + label + " <get/give/save/drop/cache/stats/plugin>");
                 return true;
             }
             else if(args[0].equalsIgnoreCase("get")){
@@ -135,7 +207,7 @@ public class ItemBridgePlugin extends JavaPlugin{
                 }
                 else{
                     if(SavedItemBridge.put(name, item, ((Player) sender).getUniqueId())){
-                        sendMessage(sender, "Successfully saved the item in your hand to ItemBridge/saves/" + name.toLowerCase() + ".yml");
+                        sendMessage(sender, "Successfully saved the item in your hand as " + ChatColor.GREEN + "saved:" + name);
 
                     }
                     else{
@@ -145,6 +217,55 @@ public class ItemBridgePlugin extends JavaPlugin{
 
                 return true;
             }
+            else if(args[0].equalsIgnoreCase("cache")){
+                if(!checkPermission(sender, "itembridge.cache")){return true;}
+
+                sendMessage(sender, "Item keys: " + ChatColor.WHITE + ItemBridge.getItemKeyCacheStats());
+                sendMessage(sender, "Item stacks: " + ChatColor.WHITE + ItemBridge.getItemStackCacheStats());
+                sendMessage(sender, "Saved items: " + ChatColor.WHITE + SavedItemBridge.getCacheStats());
+                sendMessage(sender, "Missing saved items: " + ChatColor.WHITE + SavedItemBridge.getMissingCacheStats());
+                sendMessage(sender, "Saved items loaded from storage: " + ChatColor.WHITE + SavedItemBridge.getLoadCount());
+                return true;
+            }
+            else if(args[0].equalsIgnoreCase("stats")){
+                if(!checkPermission(sender, "itembridge.stats")){return true;}
+
+                if(args.length > 1){
+                    if(args[1].equalsIgnoreCase("on")){
+                        ItemBridge.setMetricsEnabled(true);
+                        sendMessage(sender, "Listener stats are now " + ChatColor.GREEN + "on");
+                    }
+                    else if(args[1].equalsIgnoreCase("off")){
+                        ItemBridge.setMetricsEnabled(false);
+                        sendMessage(sender, "Listener stats are now " + ChatColor.RED + "off");
+                    }
+                    else if(args[1].equalsIgnoreCase("reset")){
+                        ItemBridge.resetMetrics();
+                        ItemBridge.resetWatchdog();
+                        sendMessage(sender, "Listener stats reset");
+                    }
+                    else{
+                        return sendUsage(sender, label, "stats [on/off/reset]");
+                    }
+                    return true;
+                }
+
+                if(!ItemBridge.isMetricsEnabled()){
+                    sendMessage(sender, "Listener stats are off. Use /" + label + " stats on to start collecting them");
+                }
+                for(ItemBridgeListenerStats stats : ItemBridge.getListenerStats()){
+                    if(stats.getTotalCalls() == 0 && stats.getSlowCalls() == 0){continue;}
+
+                    sendMessage(sender, ChatColor.GOLD + stats.getNamespace() + ChatColor.YELLOW + " (" + stats.getListenerClass() + ", " + stats.getPriority() + (stats.isDemoted() ? ", " + ChatColor.RED + "demoted" + ChatColor.YELLOW : "") + ")"
+                            + (stats.getSlowCalls() > 0 ? ": " + ChatColor.RED + stats.getSlowCalls() + " slow calls" : ""));
+                    for(ItemBridgeListenerStats.CallStats call : stats.getCalls()){
+                        if(call.getCalls() > 0){
+                            sender.sendMessage(ChatColor.GRAY + "  " + call);
+                        }
+                    }
+                }
+                return true;
+            }
             else if(args[0].toLowerCase().matches("^reload|rl$")){
                 if(!checkPermission(sender, "itembridge.reload")){return true;}
 
@@ -158,6 +279,51 @@ public class ItemBridgePlugin extends JavaPlugin{
         return false;
     }
 
+    private static final int MAX_COMPLETIONS = 100;
+    private static final List<String> SUBCOMMANDS = Arrays.asList("get", "give", "name", "save", "drop", "cache", "stats", "reload", "plugin", "help");
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command cmd, String label, String[] args){
+        if(!cmd.getName().equalsIgnoreCase("itembridge")){return null;}
+
+        if(args.length == 1){
+            return filter(SUBCOMMANDS, args[0]);
+        }
+
+        String sub = args[0].toLowerCase();
+        if(sub.equals("get") && args.length == 2 && sender.hasPermission("itembridge.get")){
+            return ItemBridge.completeItem(args[1], MAX_COMPLETIONS);
+        }
+        else if(sub.equals("give") && sender.hasPermission("itembridge.get")){
+            if(args.length == 2){return null;} // player names
+            if(args.length == 3){return ItemBridge.completeItem(args[2], MAX_COMPLETIONS);}
+        }
+        else if(sub.equals("stats") && args.length == 2 && sender.hasPermission("itembridge.stats")){
+            return filter(Arrays.asList("on", "off", "reset"), args[1]);
+        }
+        else if(sub.equals("drop") && sender.hasPermission("itembridge.drop")){
+            if(args.length == 2){
+                List<String> worlds = new ArrayList<>();
+                for(World w : Bukkit.getWorlds()){
+                    worlds.add(w.getName());
+                }
+                return filter(worlds, args[1]);
+            }
+            if(args.length == 6){return ItemBridge.completeItem(args[5], MAX_COMPLETIONS);}
+        }
+        return Collections.emptyList();
+    }
+
+    private static List<String> filter(List<String> options, String prefix){
+        List<String> result = new ArrayList<>();
+        for(String option : options){
+            if(option.regionMatches(true, 0, prefix, 0, prefix.length())){
+                result.add(option);
+            }
+        }
+        return result;
+    }
+
     private boolean giveItem(CommandSender from, Player to, String name, String item, String amountStr){
         ItemStack stack = tryFindItem(from, item);
         if(stack != null){
@@ -177,16 +343,17 @@ public class ItemBridgePlugin extends JavaPlugin{
     private ItemStack tryFindItem(CommandSender sender, String item){
         ItemStack stack = ItemBridge.getItemStack(item);
         if(stack == null){
-            String[] s = item.split(":", 2);
             String didYouMean = "";
-            if(s.length > 0){
-                String itemToTry = s.length == 2 ? s[1] : s[0];
-                if(ItemBridge.getItemStack("saved", itemToTry) != null){
-                    didYouMean = ". Did you mean " + ChatColor.GREEN + "saved:" + itemToTry + ChatColor.YELLOW  + "?";
-                }
-                else if(ItemBridge.getItemStack("minecraft", itemToTry) != null){
-                    didYouMean = ". Did you mean " + ChatColor.GREEN + "minecraft:" + itemToTry + ChatColor.YELLOW  + "?";
+            List<ItemBridgeKey> suggestions = ItemBridge.getSuggestions(item, 3);
+            if(!suggestions.isEmpty()){
+                StringBuilder names = new StringBuilder();
+                for(int i = 0; i < suggestions.size(); i++){
+                    if(i > 0){
+                        names.append(ChatColor.YELLOW).append(i == suggestions.size() - 1 ? (i == 1 ? " or " : ", or ") : ", ");
+                    }
+                    names.append(ChatColor.GREEN).append(suggestions.get(i));
                 }
+                didYouMean = ". Did you mean " + names + ChatColor.YELLOW + "?";
             }
             sendMessage(sender, "Couldn't find the item " + ChatColor.RED + item + ChatColor.YELLOW + didYouMean);
         }
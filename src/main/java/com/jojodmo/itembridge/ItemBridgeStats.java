@@ -0,0 +1,65 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Bukkit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.logging.Level;
+
+class ItemBridgeStats implements ItemBridgeStatsMXBean{
+
+    private static final String OBJECT_NAME = "com.jojodmo.itembridge:type=ListenerStats";
+
+    static void register(){
+        try{
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if(!server.isRegistered(name)){
+                server.registerMBean(new ItemBridgeStats(), name);
+            }
+        }
+        catch(Exception ex){
+            Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Could not register the listener stats with JMX", ex);
+        }
+    }
+
+    static void unregister(){
+        try{
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if(server.isRegistered(name)){
+                server.unregisterMBean(name);
+            }
+        }
+        catch(Exception ex){
+            Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Could not unregister the listener stats from JMX", ex);
+        }
+    }
+
+    @Override
+    public boolean isEnabled(){
+        return ItemBridge.isMetricsEnabled();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled){
+        ItemBridge.setMetricsEnabled(enabled);
+    }
+
+    @Override
+    public void reset(){
+        ItemBridge.resetMetrics();
+    }
+
+    @Override
+    public String[] getListenerReport(){
+        List<ItemBridgeListenerStats> stats = ItemBridge.getListenerStats();
+        String[] report = new String[stats.size()];
+        for(int i = 0; i < report.length; i++){
+            report[i] = stats.get(i).toString();
+        }
+        return report;
+    }
+}
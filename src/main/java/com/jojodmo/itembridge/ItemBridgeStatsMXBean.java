@@ -0,0 +1,18 @@
+package com.jojodmo.itembridge;
+
+/**
+ * The listener call metrics, exposed over JMX as com.jojodmo.itembridge:type=ListenerStats
+ */
+public interface ItemBridgeStatsMXBean{
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    void reset();
+
+    /**
+     * @return one line for every registered listener, in the order ItemBridge calls them
+     */
+    String[] getListenerReport();
+}
@@ -0,0 +1,388 @@
+package com.jojodmo.itembridge;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * An index of the IDs of every item that ItemBridge's listeners make available, as namespace:item. The IDs are kept
+ * in a sorted map keyed by their lowercase form, so finding every ID that starts with a prefix is a range query
+ * that only visits the matches. The item names are also indexed by their trigrams (every run of three characters),
+ * which is used to find similar names for misspelled items. The index is updated incrementally as listeners are
+ * registered and removed
+ */
+class ItemCatalog{
+
+    private static final int MAX_CANDIDATES = 64;
+    private static final int MAX_SCANNED_POSTING = 1024;
+
+    private final ConcurrentNavigableMap<String, Entry> ids = new ConcurrentSkipListMap<>();
+    private final Map<Source, Set<String>> bySource = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> trigrams = new ConcurrentHashMap<>();
+    // the IDs loaded from the last snapshot, which count as one more source until the live listeners are indexed
+    private Set<String> snapshot = Collections.emptySet();
+    // IDs whose listener was removed, like the listeners of plugins that disabled before ItemBridge. They are kept
+    // for the next snapshot until they are indexed again, or until the snapshot loaded at startup is dropped
+    private final Set<String> retired = new HashSet<>();
+
+    /**
+     * Add (or refresh) every item made available by the given listener
+     */
+    void index(ItemBridge bridge, ItemBridgeListener listener){
+        Source source = new Source(bridge, listener);
+        Set<String> current = new HashSet<>();
+        for(String item : listener.getAvailableItems()){
+            current.addAll(idsFor(bridge, listener, item));
+        }
+
+        synchronized(this){
+            Set<String> previous = bySource.put(source, current);
+            for(String id : current){
+                if(previous == null || !previous.contains(id)){
+                    increment(id);
+                }
+            }
+            retired.removeAll(current);
+            if(previous != null){
+                for(String id : previous){
+                    if(!current.contains(id)){
+                        decrement(id);
+                    }
+                }
+            }
+        }
+    }
+
+    void unindex(ItemBridge bridge, ItemBridgeListener listener){
+        synchronized(this){
+            Set<String> previous = bySource.remove(new Source(bridge, listener));
+            if(previous != null){
+                for(String id : previous){
+                    decrement(id);
+                }
+                retired.addAll(previous);
+            }
+        }
+    }
+
+    /**
+     * Add or remove a single item made available by the given listener
+     */
+    void update(ItemBridge bridge, ItemBridgeListener listener, String item, boolean available){
+        synchronized(this){
+            Set<String> current = bySource.computeIfAbsent(new Source(bridge, listener), k -> new HashSet<>());
+            for(String id : idsFor(bridge, listener, item)){
+                if(available ? current.add(id) : current.remove(id)){
+                    if(available){
+                        increment(id);
+                        retired.remove(id);
+                    }
+                    else{
+                        decrement(id);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether or not the given listener lists the given item as available
+     */
+    boolean lists(ItemBridge bridge, ItemBridgeListener listener, String item){
+        Set<String> listed = bySource.get(new Source(bridge, listener));
+        if(listed == null){return false;}
+
+        synchronized(this){
+            return listed.contains(bridge.defaultKey + ":" + item);
+        }
+    }
+
+    /**
+     * @param prefix the start of the ID, case insensitive
+     * @param limit the maximum number of IDs to return
+     * @return the IDs that start with {@code prefix}, in alphabetical order
+     */
+    @NotNull
+    List<String> complete(@NotNull String prefix, int limit){
+        String lower = prefix.toLowerCase();
+        List<String> result = new ArrayList<>();
+        for(Entry e : ids.subMap(lower, true, lower + Character.MAX_VALUE, true).values()){
+            if(result.size() >= limit){break;}
+            result.add(e.id);
+        }
+        return result;
+    }
+
+    /**
+     * @return every ID in the catalog
+     */
+    @NotNull
+    Collection<String> all(){
+        List<String> result = new ArrayList<>(ids.size());
+        for(Entry e : ids.values()){
+            result.add(e.id);
+        }
+        return result;
+    }
+
+    int size(){
+        return ids.size();
+    }
+
+    /**
+     * Add the IDs from a snapshot, until {@code dropSnapshot} is called
+     */
+    void loadSnapshot(Collection<String> loaded){
+        synchronized(this){
+            dropSnapshot();
+            Set<String> added = new HashSet<>();
+            for(String id : loaded){
+                if(added.add(id)){
+                    increment(id);
+                }
+            }
+            snapshot = added;
+        }
+    }
+
+    /**
+     * Remove the IDs that only the snapshot had, and forget the IDs of removed listeners, which were only kept
+     * for the next snapshot. Call this once every live listener has been indexed
+     */
+    void dropSnapshot(){
+        synchronized(this){
+            for(String id : snapshot){
+                decrement(id);
+            }
+            snapshot = Collections.emptySet();
+            retired.clear();
+        }
+    }
+
+    /**
+     * @return the IDs to save in a snapshot: every ID in the catalog, plus the IDs of listeners that were removed,
+     * since plugins that depend on ItemBridge remove their listeners before ItemBridge gets to save the snapshot
+     */
+    @NotNull
+    Collection<String> snapshot(){
+        synchronized(this){
+            Set<String> result = new LinkedHashSet<>(all());
+            result.addAll(retired);
+            return result;
+        }
+    }
+
+    /**
+     * @param query a misspelled ID, with or without a namespace
+     * @param limit the maximum number of IDs to return
+     * @return the IDs whose item names are most similar to the item name in {@code query}, most similar first.
+     * If {@code query} has a namespace, IDs in that namespace come first among equally similar names
+     */
+    @NotNull
+    List<String> suggest(@NotNull String query, int limit){
+        String lower = query.toLowerCase();
+        int colon = lower.indexOf(':');
+        String namespace = colon < 0 ? null : lower.substring(0, colon);
+        String item = colon < 0 ? lower : lower.substring(colon + 1);
+        if(item.isEmpty()){return Collections.emptyList();}
+
+        List<Set<String>> postings = new ArrayList<>();
+        for(String gram : trigramsOf(item)){
+            Set<String> posting = trigrams.get(gram);
+            if(posting != null){
+                postings.add(posting);
+            }
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+
+        // rare trigrams pick the candidates. Common ones (like "ord" in a catalog full of swords) would visit most
+        // of the catalog, so they're only checked against the candidates that were already found
+        Map<String, Integer> shared = new HashMap<>();
+        for(int i = 0; i < postings.size(); i++){
+            Set<String> posting = postings.get(i);
+            if(i == 0 || posting.size() <= MAX_SCANNED_POSTING){
+                for(String id : posting){
+                    shared.merge(id, 1, Integer::sum);
+                }
+            }
+            else{
+                for(Map.Entry<String, Integer> e : shared.entrySet()){
+                    if(posting.contains(e.getKey())){
+                        e.setValue(e.getValue() + 1);
+                    }
+                }
+            }
+        }
+
+        // only compute the edit distance for the names that share the most trigrams with the query
+        List<Map.Entry<String, Integer>> candidates = new ArrayList<>(shared.entrySet());
+        candidates.sort((a, b) -> b.getValue() - a.getValue());
+        if(candidates.size() > MAX_CANDIDATES){
+            candidates = candidates.subList(0, MAX_CANDIDATES);
+        }
+
+        int maxDistance = Math.max(2, item.length() / 2);
+        List<Suggestion> suggestions = new ArrayList<>();
+        for(Map.Entry<String, Integer> candidate : candidates){
+            String id = candidate.getKey();
+            int idColon = id.indexOf(':');
+            int distance = distance(item, id.substring(idColon + 1));
+            if(distance <= maxDistance){
+                boolean sameNamespace = namespace != null && id.regionMatches(0, namespace, 0, idColon) && namespace.length() == idColon;
+                suggestions.add(new Suggestion(id, distance, sameNamespace, candidate.getValue()));
+            }
+        }
+
+        Collections.sort(suggestions);
+        List<String> result = new ArrayList<>();
+        for(Suggestion suggestion : suggestions){
+            if(result.size() >= limit){break;}
+            Entry e = ids.get(suggestion.id);
+            if(e != null){
+                result.add(e.id);
+            }
+        }
+        return result;
+    }
+
+    private void addTrigrams(String lowerId){
+        int colon = lowerId.indexOf(':');
+        // vanilla items are also indexed without a namespace, but suggestions always include one
+        if(colon < 0){return;}
+
+        for(String gram : trigramsOf(lowerId.substring(colon + 1))){
+            trigrams.computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet()).add(lowerId);
+        }
+    }
+
+    private void removeTrigrams(String lowerId){
+        int colon = lowerId.indexOf(':');
+        if(colon < 0){return;}
+
+        for(String gram : trigramsOf(lowerId.substring(colon + 1))){
+            trigrams.computeIfPresent(gram, (k, posting) -> {
+                posting.remove(lowerId);
+                return posting.isEmpty() ? null : posting;
+            });
+        }
+    }
+
+    private static Set<String> trigramsOf(String item){
+        String padded = "  " + item + " ";
+        Set<String> grams = new HashSet<>();
+        for(int i = 0; i + 3 <= padded.length(); i++){
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    /**
+     * @return the Levenshtein distance between {@code a} and {@code b}
+     */
+    private static int distance(String a, String b){
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for(int j = 0; j <= b.length(); j++){
+            previous[j] = j;
+        }
+
+        for(int i = 1; i <= a.length(); i++){
+            current[0] = i;
+            for(int j = 1; j <= b.length(); j++){
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static List<String> idsFor(ItemBridge bridge, ItemBridgeListener listener, String item){
+        String id = bridge.defaultKey + ":" + item;
+        // vanilla items can be used without a namespace, so they can be completed without one too
+        return listener instanceof MinecraftItemBridge ? Arrays.asList(id, item) : Collections.singletonList(id);
+    }
+
+    private void increment(String id){
+        String lower = id.toLowerCase();
+        Entry previous = ids.get(lower);
+        ids.put(lower, previous == null ? new Entry(id, 1) : new Entry(previous.id, previous.references + 1));
+        if(previous == null){
+            addTrigrams(lower);
+        }
+    }
+
+    private void decrement(String id){
+        String lower = id.toLowerCase();
+        Entry previous = ids.get(lower);
+        if(previous == null){return;}
+
+        if(previous.references <= 1){
+            ids.remove(lower);
+            removeTrigrams(lower);
+        }
+        else{
+            ids.put(lower, new Entry(previous.id, previous.references - 1));
+        }
+    }
+
+    private static class Entry{
+        private final String id;
+        private final int references;
+
+        private Entry(String id, int references){
+            this.id = id;
+            this.references = references;
+        }
+    }
+
+    private static class Suggestion implements Comparable<Suggestion>{
+        private final String id;
+        private final int distance;
+        private final boolean sameNamespace;
+        private final int sharedTrigrams;
+
+        private Suggestion(String id, int distance, boolean sameNamespace, int sharedTrigrams){
+            this.id = id;
+            this.distance = distance;
+            this.sameNamespace = sameNamespace;
+            this.sharedTrigrams = sharedTrigrams;
+        }
+
+        @Override
+        public int compareTo(Suggestion o){
+            if(distance != o.distance){return Integer.compare(distance, o.distance);}
+            if(sameNamespace != o.sameNamespace){return sameNamespace ? -1 : 1;}
+            if(sharedTrigrams != o.sharedTrigrams){return Integer.compare(o.sharedTrigrams, sharedTrigrams);}
+            return id.compareTo(o.id);
+        }
+    }
+
+    private static class Source{
+        private final ItemBridge bridge;
+        private final ItemBridgeListener listener;
+
+        private Source(ItemBridge bridge, ItemBridgeListener listener){
+            this.bridge = bridge;
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(this == o) return true;
+            if(o == null || getClass() != o.getClass()) return false;
+            Source that = (Source) o;
+            return bridge == that.bridge && listener == that.listener;
+        }
+
+        @Override
+        public int hashCode(){
+            return 31 * System.identityHashCode(bridge) + System.identityHashCode(listener);
+        }
+    }
+}
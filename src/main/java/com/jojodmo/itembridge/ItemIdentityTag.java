@@ -0,0 +1,115 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The persistent data tag ItemBridge can put on the items it creates, holding the item's key (itembridge:id) and a
+ * hash of its parameters (itembridge:params), so that {@code getItemKey} can identify the item without asking
+ * every listener. Tagging is off by default, since tagged items no longer stack with untagged copies of the same item
+ */
+class ItemIdentityTag{
+
+    private static volatile boolean enabled = false;
+    private static volatile boolean verify = false;
+    private static volatile NamespacedKey idKey;
+    private static volatile NamespacedKey paramsKey;
+
+    /**
+     * @param plugin ItemBridge, which owns the tag's namespace
+     * @param enabled whether or not to tag the items {@code getItemStack} creates
+     * @param verify whether or not to ask the owning listener to confirm a tagged item before trusting the tag
+     */
+    static void configure(Plugin plugin, boolean enabled, boolean verify){
+        idKey = new NamespacedKey(plugin, "id");
+        paramsKey = new NamespacedKey(plugin, "params");
+        ItemIdentityTag.verify = verify;
+        ItemIdentityTag.enabled = enabled;
+    }
+
+    static boolean isEnabled(){
+        return enabled;
+    }
+
+    static boolean shouldVerify(){
+        return verify;
+    }
+
+    /**
+     * @return a tagged copy of the given stack, or the stack itself if it can't be tagged
+     */
+    static ItemStack tag(ItemBridge bridge, String item, Map<String, Object> parameters, ItemStack stack){
+        NamespacedKey id = idKey;
+        if(id == null || "minecraft".equals(bridge.defaultKey)){return stack;}
+
+        ItemStack tagged = stack.clone();
+        ItemMeta meta = tagged.getItemMeta();
+        if(meta == null){return stack;}
+
+        PersistentDataContainer data = meta.getPersistentDataContainer();
+        data.set(id, PersistentDataType.STRING, bridge.defaultKey + ":" + item);
+        data.set(paramsKey, PersistentDataType.INTEGER, hash(parameters));
+        tagged.setItemMeta(meta);
+        return tagged;
+    }
+
+    /**
+     * @return the tag on the given stack, or {@code null} if it isn't tagged
+     */
+    static Tag read(ItemStack stack){
+        NamespacedKey id = idKey;
+        if(id == null || stack == null || !stack.hasItemMeta()){return null;}
+
+        ItemMeta meta = stack.getItemMeta();
+        if(meta == null){return null;}
+
+        PersistentDataContainer data = meta.getPersistentDataContainer();
+        String key = data.get(id, PersistentDataType.STRING);
+        if(key == null){return null;}
+
+        Integer params = data.get(paramsKey, PersistentDataType.INTEGER);
+        return new Tag(ItemBridgeKey.parse(key), params == null ? 0 : params);
+    }
+
+    /**
+     * A hash of the parameters that doesn't depend on the order of the map, and hashes arrays by their contents.
+     * Keys mapped to {@code null} are skipped, since they match a missing key (see {@code ItemBridgeParameters.matches}).
+     * Different parameters can have the same hash, so a matching hash doesn't mean the parameters match
+     */
+    static int hash(Map<String, Object> parameters){
+        if(parameters == null){return 0;}
+
+        int hash = 0;
+        for(Map.Entry<String, Object> e : parameters.entrySet()){
+            if(e.getValue() == null){continue;}
+            hash += Objects.hashCode(e.getKey()) ^ Arrays.deepHashCode(new Object[]{e.getValue()});
+        }
+        return hash;
+    }
+
+    static class Tag{
+        private final ItemBridgeKey key;
+        private final int parametersHash;
+
+        private Tag(ItemBridgeKey key, int parametersHash){
+            this.key = key;
+            this.parametersHash = parametersHash;
+        }
+
+        ItemBridgeKey getKey(){
+            return key;
+        }
+
+        int getParametersHash(){
+            return parametersHash;
+        }
+    }
+}
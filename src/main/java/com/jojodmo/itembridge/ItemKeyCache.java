@@ -0,0 +1,160 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Caches the result of reverse item lookups ({@code ItemBridge.getItemKey} and {@code ItemBridge.getItemParameters})
+ * by the fingerprint of the ItemStack. Any change to the registered listeners invalidates every entry
+ */
+class ItemKeyCache{
+
+    static final int DEFAULT_SIZE = 4096;
+
+    private final BoundedCache<Fingerprint, Entry> cache = new BoundedCache<>(DEFAULT_SIZE);
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * The key and the parameters are resolved separately, the first time each one is asked for, so a lookup that
+     * only needs the key never runs the {@code getParameters} loop (and vice versa)
+     */
+    ItemBridgeKey getKey(ItemStack stack, Function<ItemStack, ItemBridgeKey> resolver){
+        Entry entry = entry(stack);
+        if(entry == null){return resolver.apply(stack);}
+
+        if(!entry.hasKey){
+            entry.key = resolver.apply(stack);
+            entry.hasKey = true;
+        }
+        return entry.key;
+    }
+
+    Map<String, Object> getParameters(ItemStack stack, Function<ItemStack, Map<String, Object>> resolver){
+        Entry entry = entry(stack);
+        if(entry == null){return resolver.apply(stack);}
+
+        if(!entry.hasParameters){
+            Map<String, Object> parameters = resolver.apply(stack);
+            entry.parameters = parameters == null ? null : ItemBridgeParameters.of(parameters);
+            entry.hasParameters = true;
+        }
+        return entry.parameters == null ? null : new HashMap<>(entry.parameters);
+    }
+
+    /**
+     * @return the cached entry for the given stack, or {@code null} if it hasn't been looked up yet
+     */
+    Entry getIfPresent(ItemStack stack){
+        if(cache.getMaxSize() <= 0){return null;}
+        Entry entry = cache.get(new Fingerprint(stack));
+        return entry == null || entry.generation != generation.get() ? null : entry;
+    }
+
+    private Entry entry(ItemStack stack){
+        if(cache.getMaxSize() <= 0){return null;}
+
+        // Entries are tagged with the generation they were created in, and entries from an older generation are
+        // never served. A lookup that races with invalidateAll can still store its entry, but nobody will read it
+        long gen = generation.get();
+        Fingerprint fingerprint = new Fingerprint(stack);
+        Entry entry = cache.get(fingerprint);
+        if(entry == null || entry.generation != gen){
+            entry = new Entry(gen);
+            cache.put(fingerprint.copy(), entry);
+        }
+        return entry;
+    }
+
+    void invalidateAll(){
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    void setMaxSize(int size){
+        cache.setMaxSize(size);
+    }
+
+    ItemBridgeCacheStats getStats(){
+        return cache.getStats();
+    }
+
+    static class Entry{
+        private final long generation;
+
+        // each value is written before its flag, so a reader that sees the flag also sees the value
+        private volatile ItemBridgeKey key;
+        private volatile boolean hasKey = false;
+        private volatile ItemBridgeParameters parameters;
+        private volatile boolean hasParameters = false;
+
+        private Entry(long generation){
+            this.generation = generation;
+        }
+
+        boolean hasKey(){
+            return hasKey;
+        }
+
+        ItemBridgeKey getKey(){
+            return key;
+        }
+    }
+
+    /**
+     * Identifies an ItemStack by everything except its amount: the type plus the item meta, which covers
+     * the custom model data, the persistent data container, and everything else plugins use to mark their items
+     */
+    private static class Fingerprint{
+        private final ItemStack stack;
+        private final Material type;
+        private final int hash;
+
+        /**
+         * A fingerprint of the caller's stack as-is, for lookups. That's safe since {@code isSimilar} ignores the
+         * amount, but a stored key must not change afterwards, so use {@code copy} to store it
+         */
+        private Fingerprint(ItemStack stack){
+            this.stack = stack;
+            this.type = stack.getType();
+
+            int hash = type.hashCode();
+            if(stack.hasItemMeta()){
+                ItemMeta meta = stack.getItemMeta();
+                hash = 31 * hash + (meta == null ? 0 : meta.hashCode());
+            }
+            this.hash = hash;
+        }
+
+        private Fingerprint(ItemStack stack, Material type, int hash){
+            this.stack = stack;
+            this.type = type;
+            this.hash = hash;
+        }
+
+        /**
+         * @return the same fingerprint, holding a copy of the stack so that it can be stored. The meta isn't hashed again
+         */
+        private Fingerprint copy(){
+            return new Fingerprint(stack.clone(), type, hash);
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(this == o) return true;
+            if(o == null || getClass() != o.getClass()) return false;
+            Fingerprint that = (Fingerprint) o;
+            return hash == that.hash && type == that.type && stack.isSimilar(that.stack);
+        }
+
+        @Override
+        public int hashCode(){
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a prototype of every ItemStack that a listener declared cacheable (see {@code ItemBridgeListener.isCacheable}),
+ * and hands out clones of it instead of asking the listener to build the item again
+ */
+class ItemPrototypeCache{
+
+    static final int DEFAULT_SIZE = 1024;
+    static final long DEFAULT_TTL_MINUTES = 10;
+
+    private final BoundedCache<Key, ItemStack> cache = new BoundedCache<>(DEFAULT_SIZE, DEFAULT_TTL_MINUTES, TimeUnit.MINUTES);
+
+    /**
+     * @return a clone of the cached prototype, or {@code null} if there isn't one
+     */
+    ItemStack get(ItemBridge bridge, String item, Map<String, Object> parameters){
+        if(cache.getMaxSize() <= 0){return null;}
+
+        ItemStack prototype = cache.get(new Key(bridge.defaultKey, item, parameters));
+        return prototype == null ? null : prototype.clone();
+    }
+
+    void offer(ItemBridge bridge, ItemBridgeListener listener, String item, Map<String, Object> parameters, ItemStack stack){
+        if(cache.getMaxSize() <= 0 || !listener.isCacheable(item, ItemBridgeListenerWrapper.mutable(parameters))){return;}
+        cache.put(new Key(bridge.defaultKey, item, ItemBridgeParameters.of(parameters)), stack.clone());
+    }
+
+    void invalidate(String namespace){
+        cache.invalidateIf((key, stack) -> key.namespace.equals(namespace));
+    }
+
+    void invalidateAll(){
+        cache.clear();
+    }
+
+    void setMaxSize(int size){
+        cache.setMaxSize(size);
+    }
+
+    void setTimeToLive(long ttl, TimeUnit unit){
+        cache.setTimeToLive(ttl, unit);
+    }
+
+    ItemBridgeCacheStats getStats(){
+        return cache.getStats();
+    }
+
+    private static class Key{
+        private final String namespace;
+        private final String item;
+        private final Map<String, Object> parameters;
+        private final int hash;
+
+        private Key(String namespace, String item, Map<String, Object> parameters){
+            this.namespace = namespace;
+            this.item = item;
+            this.parameters = parameters;
+            // ItemBridgeParameters caches its hash code, so the usual empty parameters cost nothing here
+            this.hash = (31 * namespace.hashCode() + item.hashCode()) * 31 + parameters.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(this == o) return true;
+            if(o == null || getClass() != o.getClass()) return false;
+            Key that = (Key) o;
+            return hash == that.hash && namespace.equals(that.namespace) && item.equals(that.item) && parameters.equals(that.parameters);
+        }
+
+        @Override
+        public int hashCode(){
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.jojodmo.itembridge;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call counts and latency histograms for a single registered listener. Calls are only timed while metrics or the
+ * watchdog are enabled, so the only cost of having both off is reading a volatile boolean per call
+ */
+class ListenerMetrics{
+
+    enum Call{
+        FETCH_ITEM_STACK("fetchItemStack"),
+        GET_ITEM_NAME("getItemName"),
+        GET_PARAMETERS("getParameters"),
+        IS_ITEM("isItem"),
+        GET_BLOCK("getBlock"),
+        GET_BLOCK_PARAMETERS("getBlockParameters"),
+        IS_BLOCK("isBlock"),
+        SET_BLOCK("setBlock"),
+        REMOVE_BLOCK("removeBlock");
+
+        private final String methodName;
+
+        Call(String methodName){
+            this.methodName = methodName;
+        }
+
+        String getMethodName(){
+            return methodName;
+        }
+    }
+
+    private static final Call[] CALLS = Call.values();
+    private static volatile boolean enabled = false;
+
+    static boolean isEnabled(){
+        return enabled;
+    }
+
+    static void setEnabled(boolean enabled){
+        ListenerMetrics.enabled = enabled;
+        ItemBridgeListenerWrapper.updateTiming();
+    }
+
+    private final CallStats[] stats = new CallStats[CALLS.length];
+
+    ListenerMetrics(){
+        for(int i = 0; i < stats.length; i++){
+            stats[i] = new CallStats();
+        }
+    }
+
+    /**
+     * @param call the listener method that was called
+     * @param elapsedNanos how long the call took
+     * @param hit whether or not the listener gave an answer
+     */
+    void record(Call call, long elapsedNanos, boolean hit){
+        stats[call.ordinal()].record(elapsedNanos, hit);
+    }
+
+    void reset(){
+        for(int i = 0; i < stats.length; i++){
+            stats[i] = new CallStats();
+        }
+    }
+
+    ItemBridgeListenerStats.CallStats snapshot(Call call){
+        return stats[call.ordinal()].snapshot(call.getMethodName());
+    }
+
+    private static class CallStats{
+        // bucket i counts the calls that took less than 2^i nanoseconds (and at least 2^(i-1))
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        private void record(long elapsed, boolean hit){
+            calls.increment();
+            if(hit){
+                hits.increment();
+            }
+            totalNanos.add(elapsed);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(Math.max(0, elapsed)));
+        }
+
+        private ItemBridgeListenerStats.CallStats snapshot(String name){
+            long count = calls.sum();
+            return new ItemBridgeListenerStats.CallStats(name, count, hits.sum(), count == 0 ? 0 : totalNanos.sum() / count, percentile(count, 0.5), percentile(count, 0.99));
+        }
+
+        /**
+         * @return an upper bound for the given percentile, in nanoseconds
+         */
+        private long percentile(long count, double percentile){
+            if(count == 0){return 0;}
+
+            long target = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for(int i = 0; i < buckets.length(); i++){
+                seen += buckets.get(i);
+                if(seen >= target){
+                    return i >= 63 ? Long.MAX_VALUE : 1L << i;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
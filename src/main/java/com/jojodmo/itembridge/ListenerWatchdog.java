@@ -0,0 +1,139 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Bukkit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Checks every call to a single registered listener against the time budget. Slow calls are logged with the
+ * namespace and call type, at most once per log interval per listener, and a listener that keeps going over the
+ * budget can be moved to the end of its priority, so that faster listeners get a chance to answer first.
+ * Whether a listener is slow is judged by its recent slow calls: they're counted per one minute window, and each
+ * window counts half as much as the one after it. A demoted listener is moved back once that rate drops to a
+ * quarter of the demotion threshold
+ */
+class ListenerWatchdog{
+
+    static final long DEFAULT_BUDGET_MILLIS = 5;
+    static final long DEFAULT_LOG_INTERVAL_SECONDS = 60;
+    static final int DEFAULT_DEMOTE_AFTER = 20;
+
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final double WINDOW_DECAY = 0.5;
+
+    private static volatile boolean enabled = false;
+    private static volatile long budgetNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_BUDGET_MILLIS);
+    private static volatile long logIntervalNanos = TimeUnit.SECONDS.toNanos(DEFAULT_LOG_INTERVAL_SECONDS);
+    private static volatile boolean demote = false;
+    private static volatile int demoteAfter = DEFAULT_DEMOTE_AFTER;
+
+    static boolean isEnabled(){
+        return enabled;
+    }
+
+    static void setEnabled(boolean enabled){
+        ListenerWatchdog.enabled = enabled;
+        ItemBridgeListenerWrapper.updateTiming();
+    }
+
+    /**
+     * @param budgetMillis the longest a single listener call may take before it's logged
+     * @param logIntervalSeconds the shortest time between two warnings about the same listener
+     * @param demote whether or not to move chronically slow listeners to the end of their priority
+     * @param demoteAfter how many recent slow calls a listener gets before it's demoted
+     */
+    static void configure(double budgetMillis, long logIntervalSeconds, boolean demote, int demoteAfter){
+        ListenerWatchdog.budgetNanos = Math.max(0, (long) (budgetMillis * 1e6));
+        ListenerWatchdog.logIntervalNanos = TimeUnit.SECONDS.toNanos(Math.max(0, logIntervalSeconds));
+        ListenerWatchdog.demote = demote;
+        ListenerWatchdog.demoteAfter = Math.max(1, demoteAfter);
+    }
+
+    private final LongAdder slowCalls = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+    private final AtomicLong nextLog = new AtomicLong(Long.MIN_VALUE);
+    private volatile boolean demoted = false;
+
+    // the slow calls in the current window, and the decayed count of the earlier windows
+    private final LongAdder windowSlowCalls = new LongAdder();
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private volatile double recentSlowCalls = 0;
+
+    /**
+     * @param now the time the call finished, from {@code System.nanoTime}
+     */
+    void check(ItemBridgeListenerWrapper wrapper, ListenerMetrics.Call call, long elapsedNanos, long now){
+        long start = windowStart.get();
+        if(now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)){
+            endWindow(wrapper, (now - start) / WINDOW_NANOS);
+        }
+        if(elapsedNanos <= budgetNanos){return;}
+
+        slowCalls.increment();
+        windowSlowCalls.increment();
+        log(wrapper, call, elapsedNanos);
+
+        if(demote && !demoted && recentSlowCalls + windowSlowCalls.sum() >= demoteAfter){
+            demoted = true;
+            ItemBridge.updateWatchdogOrder(wrapper);
+            Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] The " + wrapper.bridge.defaultKey + " listener " + wrapper.listener.getClass().getName() +
+                    " was moved to the end of its priority (" + wrapper.priority + ") after " + Math.round(recentSlowCalls + windowSlowCalls.sum()) + " recent slow calls");
+        }
+    }
+
+    /**
+     * Fold the window that just ended into the decayed count. Only ever called by one thread at a time, the one that
+     * moved the window forward
+     * @param windows how many whole windows went by since the last one started. If the listener wasn't called for a
+     *                while, that's more than one, and every window that went by without calls halves the count again
+     */
+    private void endWindow(ItemBridgeListenerWrapper wrapper, long windows){
+        double recent = (recentSlowCalls * WINDOW_DECAY + windowSlowCalls.sumThenReset()) * Math.pow(WINDOW_DECAY, windows - 1);
+        recentSlowCalls = recent;
+
+        if(demoted && recent < demoteAfter / 4.0){
+            demoted = false;
+            ItemBridge.updateWatchdogOrder(wrapper);
+            Bukkit.getLogger().log(Level.INFO, "[ItemBridge] The " + wrapper.bridge.defaultKey + " listener " + wrapper.listener.getClass().getName() +
+                    " was moved back to its place in its priority (" + wrapper.priority + "), since it's no longer slow");
+        }
+    }
+
+    private void log(ItemBridgeListenerWrapper wrapper, ListenerMetrics.Call call, long elapsedNanos){
+        long now = System.nanoTime();
+        long next = nextLog.get();
+        if((next != Long.MIN_VALUE && now - next < 0) || !nextLog.compareAndSet(next, now + logIntervalNanos)){
+            suppressed.increment();
+            return;
+        }
+
+        long others = suppressed.sumThenReset();
+        Bukkit.getLogger().log(Level.WARNING, String.format("[ItemBridge] The %s listener %s took %.1fms in %s, over the budget of %.1fms%s",
+                wrapper.bridge.defaultKey, wrapper.listener.getClass().getName(), elapsedNanos / 1e6, call.getMethodName(), budgetNanos / 1e6,
+                others > 0 ? " (" + others + " more slow calls since the last warning)" : ""));
+    }
+
+    long getSlowCalls(){
+        return slowCalls.sum();
+    }
+
+    boolean isDemoted(){
+        return demoted;
+    }
+
+    /**
+     * Forget the slow calls and the demotion. The caller is responsible for recompiling the dispatch order
+     */
+    void reset(){
+        slowCalls.reset();
+        windowSlowCalls.reset();
+        windowStart.set(System.nanoTime());
+        recentSlowCalls = 0;
+        suppressed.reset();
+        nextLog.set(Long.MIN_VALUE);
+        demoted = false;
+    }
+}
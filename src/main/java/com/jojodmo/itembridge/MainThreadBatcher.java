@@ -0,0 +1,79 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Runs work from other threads on the main thread. Everything submitted during a tick runs in a single scheduled
+ * task, instead of one task per call
+ */
+class MainThreadBatcher{
+
+    private static final Queue<Task<?>> pending = new ConcurrentLinkedQueue<>();
+    private static final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    /**
+     * @return a future for the result of {@code supplier}, which completes exceptionally if the supplier throws, or
+     * if the batch can't be scheduled (for example, because ItemBridge is being disabled)
+     */
+    static <T> CompletableFuture<T> submit(Supplier<T> supplier){
+        Task<T> task = new Task<>(supplier);
+        pending.add(task);
+        if(scheduled.compareAndSet(false, true)){
+            try{
+                Plugin plugin = ItemBridgePlugin.that;
+                if(plugin == null){
+                    throw new IllegalStateException("ItemBridge is not enabled");
+                }
+                Bukkit.getScheduler().runTask(plugin, MainThreadBatcher::drain);
+            }
+            catch(RuntimeException ex){
+                // nothing is going to run the batch, so fail everything waiting for it instead of leaving it queued
+                // forever, and let the next submit try to schedule again
+                scheduled.set(false);
+                Task<?> failed;
+                while((failed = pending.poll()) != null){
+                    failed.future.completeExceptionally(ex);
+                }
+            }
+        }
+        return task.future;
+    }
+
+    /**
+     * Run everything that's been submitted. Must be called on the main thread
+     */
+    static void drain(){
+        // clear the flag first, so that work submitted while this runs schedules the next batch
+        scheduled.set(false);
+
+        Task<?> task;
+        while((task = pending.poll()) != null){
+            task.run();
+        }
+    }
+
+    private static class Task<T>{
+        private final Supplier<T> supplier;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Task(Supplier<T> supplier){
+            this.supplier = supplier;
+        }
+
+        private void run(){
+            try{
+                future.complete(supplier.get());
+            }
+            catch(Throwable ex){
+                future.completeExceptionally(ex);
+            }
+        }
+    }
+}
@@ -6,13 +6,13 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MinecraftItemBridge implements ItemBridgeListener{
 
+    private static final String LEGACY_PREFIX = "LEGACY_";
+
     /**
      * NOTE: this instance was created using the ItemBridge.init method, which isn't available to you.
      * That's used so that reserved keys could be assigned.
@@ -22,18 +22,92 @@ public class MinecraftItemBridge implements ItemBridgeListener{
      */
     private ItemBridge bridge;
     MinecraftItemBridge(Plugin p){
+        buildMaterialTable();
         bridge = ItemBridge.init(p, "minecraft", "mc");
         bridge.registerListener(this);
     }
 
+    private static volatile Map<String, Material> materials = Collections.emptyMap();
+    // pre-1.13 names that were looked up, and their modern materials
+    private static final Map<String, Material> legacyAliases = new ConcurrentHashMap<>();
+
+    /**
+     * Build a table from every form a material name is commonly written in (DIAMOND_ORE, diamond_ore, and
+     * minecraft:diamond_ore) to its material, so the common cases are a single lookup that doesn't allocate anything.
+     * Legacy materials are left out, since converting them forces the server to load its legacy material data,
+     * which takes seconds. Pre-1.13 names are resolved on demand instead (see {@code getMaterial})
+     */
+    private static void buildMaterialTable(){
+        Map<String, Material> table = new HashMap<>();
+        for(Material m : Material.values()){
+            if(!m.name().startsWith(LEGACY_PREFIX)){
+                putMaterial(table, m.name(), m);
+            }
+        }
+        materials = table;
+    }
+
+    private static void putMaterial(Map<String, Material> table, String name, Material m){
+        String lower = name.toLowerCase(Locale.ROOT);
+        table.put(name, m);
+        table.put(lower, m);
+        table.put("minecraft:" + lower, m);
+        table.put("minecraft:" + name, m);
+    }
+
+    /**
+     * @param name the name of the material, in any of the formats accepted by Material.matchMaterial (including
+     *             LEGACY_ names), or a pre-1.13 name (like WORKBENCH) that is no longer in use
+     * @return the material with the given name, or {@code null} if there isn't one
+     */
+    static Material getMaterial(String name){
+        if(name == null){return null;}
+
+        Material m = materials.get(name);
+        if(m != null){return m;}
+
+        // the same clean-up as Material.matchMaterial
+        String normalized = name.trim();
+        if(normalized.regionMatches(true, 0, "minecraft:", 0, "minecraft:".length())){
+            normalized = normalized.substring("minecraft:".length());
+        }
+        normalized = normalized.toUpperCase(Locale.ROOT).replaceAll("\\s+", "_").replaceAll("\\W", "");
+
+        m = materials.get(normalized);
+        if(m != null){return m;}
+
+        // LEGACY_ names are left out of the table, but they're still valid IDs, and resolve to the legacy material
+        // itself, exactly like Material.matchMaterial. Looking one up doesn't convert anything
+        if(normalized.startsWith(LEGACY_PREFIX)){
+            return Material.getMaterial(normalized);
+        }
+
+        m = legacyAliases.get(normalized);
+        if(m != null){return m;}
+
+        // only pre-1.13 names that actually exist get converted, so typos never load the legacy material data
+        if(Material.getMaterial(LEGACY_PREFIX + normalized) == null){return null;}
+
+        m = Material.matchMaterial(normalized, true);
+        if(m == null || m.name().startsWith(LEGACY_PREFIX) || m == Material.AIR){return null;}
+
+        legacyAliases.put(normalized, m);
+        return m;
+    }
+
     @Override
     public ItemBridgeListenerPriority getPriority(){
         return ItemBridgeListenerPriority.LOWEST;
     }
 
+    @Override
+    public boolean isThreadSafe(){
+        return true;
+    }
+
     @Override
     public ItemStack fetchItemStack(String item){
-        Material m = Material.matchMaterial(item);
+        Material m = getMaterial(item);
         return m == null ? null : new ItemStack(m);
     }
 
@@ -44,12 +118,12 @@ public class MinecraftItemBridge implements ItemBridgeListener{
 
     @Override
     public boolean isItem(ItemStack stack, String name){
-        return stack.getType().name().equalsIgnoreCase(name);
+        return stack.getType() == getMaterial(name);
     }
 
     @Override
     public boolean setBlock(Location location, String id){
-        Material m = Material.matchMaterial(id);
+        Material m = getMaterial(id);
         if(m == null){return false;}
         location.getBlock().setType(m);
         return true;
@@ -62,7 +136,7 @@ public class MinecraftItemBridge implements ItemBridgeListener{
 
     @Override
     public boolean isBlock(Location location, String id){
-        return location.getBlock().getType().name().equalsIgnoreCase(id);
+        return location.getBlock().getType() == getMaterial(id);
     }
 
     private static List<String> allItemIDs = null;
@@ -0,0 +1,552 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * Stores every saved item in a single indexed binary file, which is memory-mapped and only deserialized one entry
+ * at a time, as entries are requested. The file is laid out as
+ * <pre>
+ *   header:     int magic, int format version, long offset of the checkpoint
+ *   data:       one serialized ItemStack per entry
+ *   checkpoint: int length, then the index: int count, then for each entry: key, display key, offset, length,
+ *               save time, saved by, save method, ItemBridge version. Then an int CRC32 of the index
+ *   records:    one per save since the checkpoint: int record magic, int metadata length, int data length,
+ *               the entry's metadata, the serialized ItemStack, then an int CRC32 of the metadata and data
+ * </pre>
+ * The index is kept in memory, so saving an item only appends one record and maps the data it just wrote. If the
+ * server stops in the middle of a save, the pack is opened up to the last record whose checksum matches, and the
+ * rest is cut off. Once replaced entries take up more space than the live ones, or more has been appended than was
+ * in the last checkpoint, the pack is compacted into a new file with a fresh checkpoint, which replaces the old one
+ */
+class PackSavedItemStorage implements SavedItemStorage{
+
+    private static final int MAGIC = 0x4942504B; // "IBPK"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_MAGIC = 0x49424952; // "IBIR"
+    private static final int RECORD_HEADER_SIZE = 12;
+    // small packs aren't worth rewriting, however much of them is dead
+    private static final long MIN_COMPACT_BYTES = 64 * 1024;
+    private static final long MAX_SEGMENT = Integer.MAX_VALUE;
+
+    private final File file;
+    private volatile Map<String, Entry> index;
+    // the end of the last valid record, which is where the next one is written
+    private long end;
+    private long checkpointEnd;
+    private long liveBytes;
+    private long overheadBytes;
+    // replacing the file fails on Windows while it's mapped, in which case compacting waits until the next restart
+    private boolean compactDeferred = false;
+    // whether or not the pack was replaced since it was last opened
+    private boolean stale = false;
+
+    /**
+     * @param file the pack file. If it doesn't exist yet, it will be created from the items in {@code legacyFolder}
+     * @param legacyFolder the folder that holds the items saved as YAML files
+     */
+    PackSavedItemStorage(File file, File legacyFolder) throws IOException{
+        this.file = file;
+        if(!file.exists()){
+            migrate(legacyFolder);
+        }
+
+        // compacting happens before anything is mapped, so that it can always replace the file
+        open(false);
+        if(shouldCompact()){
+            compact();
+        }
+        open(true);
+    }
+
+    @Override
+    public ItemStack load(@NotNull String key){
+        byte[] data = read(key);
+        if(data == null){return null;}
+
+        try{
+            return deserialize(data);
+        }
+        catch(Exception ex){
+            Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Could not read the saved item '" + key + "' from " + file.getName(), ex);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean save(@NotNull String key, @NotNull ItemStack item, @NotNull UUID saver){
+        try{
+            append(key, serialize(item), saver.toString(), ItemBridgePlugin.that.getDescription().getVersion());
+            return true;
+        }
+        catch(Exception ex){
+            Bukkit.getLogger().log(Level.SEVERE, "[ItemBridge] Could not save the item '" + key + "' to " + file.getName(), ex);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean exists(@NotNull String key){
+        return index.containsKey(key);
+    }
+
+    @Override
+    public boolean shouldPreload(){
+        // entries are read straight from the mapped file, so there's no need to deserialize everything up front
+        return false;
+    }
+
+    @Override
+    public @NotNull Collection<String> keys(){
+        return new ArrayList<>(index.keySet());
+    }
+
+    /**
+     * @return the serialized item saved with the given lowercase name, or {@code null} if there isn't one
+     */
+    byte[] read(@NotNull String key){
+        Entry entry = index.get(key);
+        if(entry == null){return null;}
+
+        ByteBuffer buffer = entry.buffer.duplicate();
+        buffer.position(entry.bufferOffset);
+        byte[] data = new byte[entry.length];
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * Append a record for the given item to the pack, and compact it if that leaves too much dead space
+     * @param key the name of the item
+     * @param data the serialized item
+     * @param savedBy the UUID of the player who saved the item
+     * @param version the version of ItemBridge that saved the item
+     */
+    synchronized void append(@NotNull String key, @NotNull byte[] data, @NotNull String savedBy, @NotNull String version) throws IOException{
+        if(stale){
+            // the pack was compacted, but couldn't be opened again afterwards
+            open(true);
+        }
+
+        Entry entry = new Entry(key.toLowerCase(), key, System.currentTimeMillis(), savedBy, "playerCommand", version);
+        byte[] metadata = encodeMetadata(entry);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + metadata.length + data.length + 4);
+        record.putInt(RECORD_MAGIC).putInt(metadata.length).putInt(data.length).put(metadata).put(data).putInt(crc(metadata, data));
+        record.flip();
+
+        long offset = end + RECORD_HEADER_SIZE + metadata.length;
+        Entry written;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            try{
+                while(record.hasRemaining()){
+                    channel.write(record, end + record.position());
+                }
+                channel.force(true);
+            }
+            catch(IOException ex){
+                // cut off whatever made it to disk, so that the next record doesn't end up behind an invalid one
+                channel.truncate(end);
+                throw ex;
+            }
+
+            ByteBuffer mapped = data.length == 0 ? ByteBuffer.allocate(0) : channel.map(FileChannel.MapMode.READ_ONLY, offset, data.length);
+            written = entry.at(offset, data.length, record.capacity(), mapped, 0);
+        }
+
+        end += record.capacity();
+        Entry previous = index.put(written.key, written);
+        liveBytes += written.diskLength - (previous == null ? 0 : previous.diskLength);
+
+        if(shouldCompact()){
+            try{
+                compact();
+            }
+            catch(IOException ex){
+                // the record is already saved, so the pack just stays larger than it needs to be until it's opened again
+                compactDeferred = true;
+                Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Could not compact " + file.getName() + ". It will be compacted the next time it's opened", ex);
+                return;
+            }
+
+            stale = true;
+            open(true);
+            stale = false;
+        }
+    }
+
+    /**
+     * Read the index from the checkpoint and every valid record after it, cutting off anything left over from an
+     * unfinished save
+     * @param map whether or not to map the data of every entry
+     */
+    private synchronized void open(boolean map) throws IOException{
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            long size = channel.size();
+            if(size < HEADER_SIZE + 8){
+                throw new IOException(file.getName() + " is not a valid ItemBridge pack file");
+            }
+
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            if(header.getInt(0) != MAGIC){
+                throw new IOException(file.getName() + " is not a valid ItemBridge pack file");
+            }
+            if(header.getInt(4) != FORMAT_VERSION){
+                throw new IOException(file.getName() + " uses an unsupported pack format version (" + header.getInt(4) + ")");
+            }
+
+            // the checkpoint is only ever written as part of a complete file, so it has to be valid
+            long checkpoint = header.getLong(8);
+            int checkpointLength = checkpoint < HEADER_SIZE || checkpoint > size - 8 ? -1 : read(channel, checkpoint, 4).getInt(0);
+            if(checkpointLength < 4 || checkpointLength > size - checkpoint - 8){
+                throw new IOException(file.getName() + " does not contain a valid index");
+            }
+            ByteBuffer checkpointData = read(channel, checkpoint + 4, checkpointLength + 4);
+            byte[] indexData = Arrays.copyOf(checkpointData.array(), checkpointLength);
+            if(crc(indexData) != checkpointData.getInt(checkpointLength)){
+                throw new IOException(file.getName() + " does not contain a valid index");
+            }
+
+            Map<String, Entry> loaded = new ConcurrentHashMap<>();
+            List<Entry> base = decodeIndex(indexData);
+            for(Entry e : base){
+                loaded.put(e.key, e);
+            }
+
+            long recordsStart = checkpoint + 4 + checkpointLength + 4;
+            long position = recordsStart;
+            List<Entry> records = new ArrayList<>();
+            while(position + RECORD_HEADER_SIZE + 4 <= size){
+                ByteBuffer recordHeader = read(channel, position, RECORD_HEADER_SIZE);
+                int metadataLength = recordHeader.getInt(4);
+                int dataLength = recordHeader.getInt(8);
+                long bodyLength = (long) metadataLength + dataLength + 4;
+                if(recordHeader.getInt(0) != RECORD_MAGIC || metadataLength < 0 || dataLength < 0
+                        || bodyLength > size - position - RECORD_HEADER_SIZE || bodyLength > Integer.MAX_VALUE){
+                    break;
+                }
+
+                ByteBuffer body = read(channel, position + RECORD_HEADER_SIZE, (int) bodyLength);
+                byte[] metadata = Arrays.copyOfRange(body.array(), 0, metadataLength);
+                byte[] data = Arrays.copyOfRange(body.array(), metadataLength, metadataLength + dataLength);
+                if(crc(metadata, data) != body.getInt(metadataLength + dataLength)){
+                    break;
+                }
+
+                long recordLength = RECORD_HEADER_SIZE + bodyLength;
+                Entry e = decodeMetadata(metadata).at(position + RECORD_HEADER_SIZE + metadataLength, dataLength, recordLength, null, 0);
+                records.add(e);
+                loaded.put(e.key, e);
+                position += recordLength;
+            }
+
+            if(position < size){
+                Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] " + file.getName() + " ends with " + (size - position) + " bytes from an unfinished save, which will be discarded");
+                channel.truncate(position);
+                channel.force(true);
+            }
+
+            long live = 0;
+            for(Entry e : loaded.values()){
+                live += e.diskLength;
+            }
+
+            if(map){
+                // replaced entries don't need to be mapped, but they're in the way of one mapping for the whole region
+                for(Entry e : mapSegments(channel, base)){
+                    loaded.computeIfPresent(e.key, (k, old) -> old.offset == e.offset ? e : old);
+                }
+                for(Entry e : mapSegments(channel, records)){
+                    loaded.computeIfPresent(e.key, (k, old) -> old.offset == e.offset ? e : old);
+                }
+            }
+
+            this.index = loaded;
+            this.end = position;
+            this.checkpointEnd = recordsStart;
+            this.liveBytes = live;
+            this.overheadBytes = HEADER_SIZE + checkpointLength + 8;
+        }
+    }
+
+    /**
+     * Map the data of the given entries, which have to be sorted by offset, in as few mappings as possible
+     * @return the entries with their data mapped
+     */
+    private static List<Entry> mapSegments(FileChannel channel, List<Entry> entries) throws IOException{
+        List<Entry> mapped = new ArrayList<>(entries.size());
+        int first = 0;
+        while(first < entries.size()){
+            long start = entries.get(first).offset;
+            int last = first;
+            while(last + 1 < entries.size() && entries.get(last + 1).offset + entries.get(last + 1).length - start <= MAX_SEGMENT){
+                last++;
+            }
+
+            Entry tail = entries.get(last);
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, tail.offset + tail.length - start);
+            for(int i = first; i <= last; i++){
+                Entry e = entries.get(i);
+                mapped.add(e.at(e.offset, e.length, e.diskLength, buffer, (int) (e.offset - start)));
+            }
+            first = last + 1;
+        }
+        return mapped;
+    }
+
+    private boolean shouldCompact(){
+        if(compactDeferred){return false;}
+        long dead = end - liveBytes - overheadBytes;
+        long appended = end - checkpointEnd;
+        return (dead > liveBytes && dead > MIN_COMPACT_BYTES) || (appended > checkpointEnd && appended > MIN_COMPACT_BYTES);
+    }
+
+    private synchronized void compact() throws IOException{
+        List<Entry> entries = new ArrayList<>();
+        List<byte[]> data = new ArrayList<>();
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            for(Entry e : index.values()){
+                entries.add(e);
+                data.add(read(channel, e.offset, e.length).array());
+            }
+        }
+
+        long before = end;
+        write(entries, data);
+        Bukkit.getLogger().log(Level.INFO, "[ItemBridge] Compacted " + file.getName() + ", freeing " + Math.max(0, before - file.length()) / 1024 + "KB");
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException{
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()){
+            if(channel.read(buffer, position + buffer.position()) < 0){
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Create the pack file from the items saved in the legacy saves/NAME.yml format. The folder is renamed
+     * afterwards so that the YAML files are kept as a backup, but aren't migrated again
+     */
+    private void migrate(File legacyFolder) throws IOException{
+        List<Entry> entries = new ArrayList<>();
+        List<byte[]> data = new ArrayList<>();
+
+        File[] files = legacyFolder.listFiles((dir, name) -> name.endsWith(".yml"));
+        if(files != null){
+            for(File f : files){
+                String key = f.getName().substring(0, f.getName().length() - 4).toLowerCase();
+                YamlConfiguration config = YamlConfiguration.loadConfiguration(f);
+                ItemStack item = config.getItemStack("item");
+                if(item == null){
+                    Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Skipped migrating the saved item '" + key + "', since it doesn't contain an item");
+                    continue;
+                }
+
+                entries.add(new Entry(key, config.getString("key", key), config.getLong("saveTime", f.lastModified()),
+                        config.getString("savedBy", ""), config.getString("saveMethod", "playerCommand"), config.getString("ItemBridgeVersion", "")));
+                data.add(serialize(item));
+            }
+        }
+
+        write(entries, data);
+        if(files != null && files.length > 0){
+            File backup = new File(legacyFolder.getParentFile(), legacyFolder.getName() + "-migrated");
+            if(backup.exists()){
+                backup = new File(legacyFolder.getParentFile(), legacyFolder.getName() + "-migrated-" + System.currentTimeMillis());
+            }
+            if(!legacyFolder.renameTo(backup)){
+                Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Could not rename " + legacyFolder.getName() + " to " + backup.getName() + " after migrating it");
+            }
+            Bukkit.getLogger().log(Level.INFO, "[ItemBridge] Migrated " + entries.size() + " saved items to " + file.getName() + ". The original files were moved to " + backup.getName());
+        }
+    }
+
+    /**
+     * Atomically replace the pack file with a new one containing exactly the given entries
+     */
+    private void write(List<Entry> entries, List<byte[]> data) throws IOException{
+        File parent = file.getAbsoluteFile().getParentFile();
+        if(!parent.exists() && !parent.mkdirs()){
+            throw new IOException("Could not create the folder " + parent);
+        }
+
+        long checkpoint = HEADER_SIZE;
+        for(byte[] bytes : data){
+            checkpoint += bytes.length;
+        }
+
+        File temp = new File(parent, file.getName() + ".tmp");
+        List<Entry> written = new ArrayList<>();
+        try(FileOutputStream stream = new FileOutputStream(temp); DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))){
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(checkpoint);
+
+            long offset = HEADER_SIZE;
+            for(int i = 0; i < entries.size(); i++){
+                byte[] bytes = data.get(i);
+                out.write(bytes);
+                written.add(entries.get(i).at(offset, bytes.length, bytes.length, null, 0));
+                offset += bytes.length;
+            }
+
+            byte[] indexData = encodeIndex(written);
+            out.writeInt(indexData.length);
+            out.write(indexData);
+            out.writeInt(crc(indexData));
+            out.flush();
+            // the new file has to be on disk before it replaces the old one, or a crash could leave neither
+            stream.getChannel().force(true);
+        }
+
+        try{
+            try{
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch(AtomicMoveNotSupportedException ex){
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch(IOException ex){
+            Files.deleteIfExists(temp.toPath());
+            throw ex;
+        }
+    }
+
+    private static int crc(byte[]... parts){
+        CRC32 crc = new CRC32();
+        for(byte[] part : parts){
+            crc.update(part, 0, part.length);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encodeIndex(Collection<Entry> entries) throws IOException{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(DataOutputStream out = new DataOutputStream(bytes)){
+            out.writeInt(entries.size());
+            for(Entry e : entries){
+                out.writeUTF(e.key);
+                out.writeUTF(e.displayKey);
+                out.writeLong(e.offset);
+                out.writeInt(e.length);
+                out.writeLong(e.saveTime);
+                out.writeUTF(e.savedBy);
+                out.writeUTF(e.saveMethod);
+                out.writeUTF(e.itemBridgeVersion);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the entries in the index, in the order they were written
+     */
+    private static List<Entry> decodeIndex(byte[] data) throws IOException{
+        try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))){
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for(int i = 0; i < count; i++){
+                String key = in.readUTF();
+                String displayKey = in.readUTF();
+                long offset = in.readLong();
+                int length = in.readInt();
+                entries.add(new Entry(key, displayKey, in.readLong(), in.readUTF(), in.readUTF(), in.readUTF()).at(offset, length, length, null, 0));
+            }
+            return entries;
+        }
+    }
+
+    private static byte[] encodeMetadata(Entry entry) throws IOException{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(DataOutputStream out = new DataOutputStream(bytes)){
+            out.writeUTF(entry.key);
+            out.writeUTF(entry.displayKey);
+            out.writeLong(entry.saveTime);
+            out.writeUTF(entry.savedBy);
+            out.writeUTF(entry.saveMethod);
+            out.writeUTF(entry.itemBridgeVersion);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Entry decodeMetadata(byte[] data) throws IOException{
+        try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))){
+            return new Entry(in.readUTF(), in.readUTF(), in.readLong(), in.readUTF(), in.readUTF(), in.readUTF());
+        }
+    }
+
+    private static byte[] serialize(ItemStack item) throws IOException{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(BukkitObjectOutputStream out = new BukkitObjectOutputStream(bytes)){
+            out.writeObject(item);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ItemStack deserialize(byte[] data) throws IOException, ClassNotFoundException{
+        try(BukkitObjectInputStream in = new BukkitObjectInputStream(new ByteArrayInputStream(data))){
+            return (ItemStack) in.readObject();
+        }
+    }
+
+    private static class Entry{
+        private final String key;
+        private final String displayKey;
+        private final long saveTime;
+        private final String savedBy;
+        private final String saveMethod;
+        private final String itemBridgeVersion;
+
+        // where the serialized item is in the file, and in the mapping that holds it
+        private final long offset;
+        private final int length;
+        private final ByteBuffer buffer;
+        private final int bufferOffset;
+        // the space the entry takes up in the file, which becomes dead once the entry is replaced
+        private final long diskLength;
+
+        private Entry(String key, String displayKey, long saveTime, String savedBy, String saveMethod, String itemBridgeVersion){
+            this(key, displayKey, saveTime, savedBy, saveMethod, itemBridgeVersion, 0, 0, null, 0, 0);
+        }
+
+        private Entry(String key, String displayKey, long saveTime, String savedBy, String saveMethod, String itemBridgeVersion,
+                      long offset, int length, ByteBuffer buffer, int bufferOffset, long diskLength){
+            this.key = key;
+            this.displayKey = displayKey;
+            this.saveTime = saveTime;
+            this.savedBy = savedBy;
+            this.saveMethod = saveMethod;
+            this.itemBridgeVersion = itemBridgeVersion;
+            this.offset = offset;
+            this.length = length;
+            this.buffer = buffer;
+            this.bufferOffset = bufferOffset;
+            this.diskLength = diskLength;
+        }
+
+        private Entry at(long offset, int length, long diskLength, ByteBuffer buffer, int bufferOffset){
+            return new Entry(key, displayKey, saveTime, savedBy, saveMethod, itemBridgeVersion, offset, length, buffer, bufferOffset, diskLength);
+        }
+    }
+}
@@ -1,105 +1,301 @@
 package com.jojodmo.itembridge;
 
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 
 public class SavedItemBridge implements ItemBridgeListener{
 
+    private static final int LOADER_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static volatile SavedItemStorage storage;
+    private static volatile ExecutorService loader;
+
+    private static volatile SavedItemBridge instance;
+
     private Plugin plugin;
     private ItemBridge bridge;
     SavedItemBridge(Plugin p){
         this.plugin = p;
+        instance = this;
+        storage = createStorage(p.getDataFolder(), p.getConfig().getString("saves.storage", "yaml"));
+        storage.watch(SavedItemBridge::invalidate);
         bridge = ItemBridge.init(p, "itembridge", "saved", "save", "saves");
         bridge.registerListener(this);
     }
 
+    /**
+     * @param dataFolder ItemBridge's data folder
+     * @param type either "yaml", to store every item in its own file in the saves folder, or "pack", to store every
+     *             item in the single file saves.pack (migrating the saves folder the first time it's used)
+     */
+    static SavedItemStorage createStorage(File dataFolder, String type){
+        File folder = new File(dataFolder, "saves");
+        if("pack".equalsIgnoreCase(type)){
+            File pack = new File(dataFolder, "saves.pack");
+            try{
+                return new PackSavedItemStorage(pack, folder);
+            }
+            catch(Exception ex){
+                if(pack.exists()){
+                    // the saves folder is moved away once it's migrated, so falling back to it would hide every saved item
+                    Bukkit.getLogger().log(Level.SEVERE, "[ItemBridge] Could not open saves.pack. Saved items are unavailable until it's fixed or removed", ex);
+                    return new UnavailableStorage();
+                }
+                Bukkit.getLogger().log(Level.SEVERE, "[ItemBridge] Could not create saves.pack, falling back to the saves folder", ex);
+            }
+        }
+        else if(!"yaml".equalsIgnoreCase(type)){
+            Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Unknown saves.storage type '" + type + "', using 'yaml'");
+        }
+        return new YamlSavedItemStorage(folder);
+    }
+
     @Override
     public ItemStack fetchItemStack(String item){
-        return get(item);
+        ItemStack stack = get(item);
+        return stack == null ? null : stack.clone();
+    }
+
+    @Override
+    public boolean isThreadSafe(){
+        return true;
+    }
+
+    @Override
+    public Set<Material> getItemMaterials(){
+        // saved items are plain ItemStacks, so they can't be recognized afterwards
+        return Collections.emptySet();
     }
 
     static void reload(){
         cached.clear();
+        missing.clear();
+        preload();
     }
 
-    private static Map<String, ItemStack> cached = new HashMap<>();
+    /**
+     * Forget the cached copy of a saved item, so that it's read from storage again the next time it's used
+     * @param key the lowercase name of the saved item, or {@code null} to forget every saved item
+     */
+    static void invalidate(String key){
+        SavedItemBridge saved = instance;
+        if(key == null){
+            cached.clear();
+            missing.clear();
+            if(saved != null){
+                ItemBridge.refreshCatalog("saved");
+            }
+        }
+        else{
+            cached.invalidate(key);
+            missing.invalidate(key);
+            if(saved != null){
+                ItemBridge.updateCatalog(saved.bridge, saved, key, storage.exists(key));
+            }
+        }
+    }
+
+    static final int DEFAULT_CACHE_SIZE = 2048;
+    static final int DEFAULT_MISSING_CACHE_SIZE = 256;
+    static final long DEFAULT_MISSING_TTL_SECONDS = 60;
+
+    // items that don't exist are remembered separately, so that typos can't push real items out of the cache
+    private static final BoundedCache<String, ItemStack> cached = new BoundedCache<>(DEFAULT_CACHE_SIZE);
+    private static final BoundedCache<String, Boolean> missing = new BoundedCache<>(DEFAULT_MISSING_CACHE_SIZE, DEFAULT_MISSING_TTL_SECONDS, TimeUnit.SECONDS);
+    private static final LongAdder loads = new LongAdder();
+
+    static void configureCache(int size, int missingSize, long missingTtlSeconds){
+        cached.setMaxSize(size);
+        missing.setMaxSize(missingSize);
+        missing.setTimeToLive(missingTtlSeconds, TimeUnit.SECONDS);
+    }
+
+    static ItemBridgeCacheStats getCacheStats(){
+        return cached.getStats();
+    }
+
+    static ItemBridgeCacheStats getMissingCacheStats(){
+        return missing.getStats();
+    }
+
+    /**
+     * @return the number of times a saved item had to be read from storage
+     */
+    static long getLoadCount(){
+        return loads.sum();
+    }
 
     static ItemStack get(String key){
         key = key.toLowerCase();
-        if(cached.containsKey(key)){
-            return cached.get(key);
+        ItemStack stack = cached.get(key);
+        if(stack != null || missing.get(key) != null){
+            return stack;
         }
+        return load(key);
+    }
 
-        File file = getFile("saves/" + key + ".yml");
-        if(!file.exists()){
-            cached.put(key, null);
+    private static ItemStack load(String key){
+        loads.increment();
+        ItemStack stack = storage.load(key);
+        if(stack == null){
+            // if the item exists but couldn't be read (for example, its file is still being written), try again next time
+            if(!storage.exists(key)){
+                missing.put(key, Boolean.TRUE);
+            }
             return null;
         }
 
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
-        ItemStack stack = config.getItemStack("item");
-        cached.put(key, stack);
-        return stack;
+        // a newer item saved with put while this one was loading wins
+        ItemStack existing = cached.putIfAbsent(key, stack);
+        return existing == null ? stack : existing;
     }
 
-    static boolean put(String key, ItemStack item, UUID saver){
-        File folder = getFile("saves");
-        if(!folder.exists()){
-            if(!folder.mkdirs()){
-                return false;
-            }
+    /**
+     * Fetch a saved item without blocking the calling thread. If the item isn't loaded yet, it will be loaded
+     * on one of ItemBridge's loader threads
+     * @param key the name of the saved item
+     * @return a future that completes with a copy of the saved item, or with {@code null} if there is no saved item with the given name
+     */
+    @NotNull
+    public static CompletableFuture<ItemStack> getAsync(@NotNull String key){
+        String lower = key.toLowerCase();
+        ItemStack stack = cached.get(lower);
+        if(stack != null || missing.get(lower) != null){
+            return CompletableFuture.completedFuture(stack == null ? null : stack.clone());
         }
 
-        File file = getFile("saves/" + key.toLowerCase() + ".yml");
-        if(!file.exists()){
-            try{
-                if(!file.createNewFile()){
-                    return false;
+        return CompletableFuture.supplyAsync(() -> {
+            ItemStack loaded = get(lower);
+            return loaded == null ? null : loaded.clone();
+        }, getLoader());
+    }
+
+    /**
+     * Load every saved item in parallel on ItemBridge's loader threads, so that the first use of a saved item
+     * doesn't read from the disk on the main thread
+     * @return a future that completes when every saved item has been loaded
+     */
+    static CompletableFuture<Void> preload(){
+        if(!storage.shouldPreload()){
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<String> keys = new ArrayList<>(storage.keys());
+        // anything past the size of the cache would just be evicted again
+        if(keys.size() > cached.getMaxSize()){
+            keys = keys.subList(0, cached.getMaxSize());
+        }
+        if(keys.isEmpty()){
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long start = System.nanoTime();
+        AtomicInteger loaded = new AtomicInteger();
+        ExecutorService executor = getLoader();
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[keys.size()];
+        for(int i = 0; i < keys.size(); i++){
+            String key = keys.get(i);
+            futures[i] = CompletableFuture.runAsync(() -> {
+                if(get(key) != null){
+                    loaded.incrementAndGet();
                 }
-            }
-            catch(Exception ex){ex.printStackTrace();}
+            }, executor);
         }
 
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
-        config.set("key", key);
-        config.set("ItemBridgeVersion", ItemBridgePlugin.that.getDescription().getVersion());
-        config.set("saveTime", System.currentTimeMillis());
-        config.set("saveMethod", "playerCommand");
-        config.set("savedBy", saver.toString());
+        return CompletableFuture.allOf(futures).whenComplete((v, ex) -> {
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if(ex != null){
+                Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Failed to preload some saved items", ex);
+            }
+            Bukkit.getLogger().log(Level.INFO, "[ItemBridge] Preloaded " + loaded.get() + " saved item" + (loaded.get() == 1 ? "" : "s") + " in " + millis + "ms using " + LOADER_THREADS + " threads");
+        });
+    }
 
-        config.set("item", item);
-        config.set("version", 1);
+    private static ExecutorService getLoader(){
+        ExecutorService executor = loader;
+        if(executor == null){
+            synchronized(SavedItemBridge.class){
+                if(loader == null){
+                    AtomicInteger threads = new AtomicInteger();
+                    loader = Executors.newFixedThreadPool(LOADER_THREADS, r -> {
+                        Thread t = new Thread(r, "ItemBridge Saved Item Loader #" + threads.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                }
+                executor = loader;
+            }
+        }
+        return executor;
+    }
 
-        try{
-            config.save(file);
+    static void shutdown(){
+        instance = null;
+        if(storage != null){
+            storage.close();
+        }
+        synchronized(SavedItemBridge.class){
+            if(loader != null){
+                loader.shutdownNow();
+                loader = null;
+            }
         }
-        catch(Exception ex){
-            ex.printStackTrace();
+    }
+
+    static boolean put(String key, ItemStack item, UUID saver){
+        if(!storage.save(key, item, saver)){
             return false;
         }
 
-        cached.put(key.toLowerCase(), item);
+        cached.put(key.toLowerCase(), item.clone());
+        missing.invalidate(key.toLowerCase());
+        SavedItemBridge saved = instance;
+        if(saved != null){
+            ItemBridge.updateCatalog(saved.bridge, saved, key.toLowerCase(), true);
+        }
         return true;
     }
 
-    private static File getFile(String fileName){
-        return new File(ItemBridgePlugin.that.getDataFolder().getPath() + File.separator + fileName);
-    }
-
     @Override
     public @NotNull List<String> getAvailableItems(){
-        File saves = new File(ItemBridgePlugin.that.getDataFolder().getPath() + File.separator + "saves");
-        List<String> ids = new ArrayList<>();
-        for(File f : saves.listFiles()){
-            ids.add(f.getName().replaceAll("\\.yml$", ""));
+        return Collections.unmodifiableList(new ArrayList<>(storage.keys()));
+    }
+
+    /**
+     * Used when saves.pack exists but can't be opened. Every lookup misses and saving is refused, so that nothing is
+     * written somewhere it would be lost once the pack is fixed
+     */
+    private static class UnavailableStorage implements SavedItemStorage{
+        @Override
+        public ItemStack load(@NotNull String key){
+            return null;
+        }
+
+        @Override
+        public boolean save(@NotNull String key, @NotNull ItemStack item, @NotNull UUID saver){
+            Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Could not save the item '" + key + "', since saves.pack could not be opened");
+            return false;
+        }
+
+        @Override
+        public @NotNull Collection<String> keys(){
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean shouldPreload(){
+            return false;
         }
-        return Collections.unmodifiableList(ids);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,60 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Where {@code SavedItemBridge} reads and writes saved items. Implementations must be safe to call from multiple threads
+ */
+interface SavedItemStorage{
+
+    /**
+     * @param key the lowercase name of the saved item
+     * @return the saved item, or {@code null} if there is no saved item with the given name
+     */
+    @Nullable
+    ItemStack load(@NotNull String key);
+
+    /**
+     * @param key the name of the item
+     * @param item the item to save
+     * @param saver the UUID of the player who saved the item
+     * @return {@code true} if the item was saved successfully, {@code false} otherwise
+     */
+    boolean save(@NotNull String key, @NotNull ItemStack item, @NotNull UUID saver);
+
+    /**
+     * @return the lowercase names of every saved item
+     */
+    @NotNull
+    Collection<String> keys();
+
+    /**
+     * @param key the lowercase name of the saved item
+     * @return {@code true} if there is a saved item with the given name
+     */
+    default boolean exists(@NotNull String key){
+        return keys().contains(key);
+    }
+
+    /**
+     * @return {@code true} if every item should be loaded in the background when ItemBridge starts, or {@code false}
+     * if loading an item when it's first used is already cheap enough
+     */
+    default boolean shouldPreload(){
+        return true;
+    }
+
+    /**
+     * Start reporting changes made to the storage outside of ItemBridge, for example by editing files by hand
+     * @param onChange called with the lowercase name of each item that changed, or with {@code null} if any item may have changed
+     */
+    default void watch(@NotNull Consumer<String> onChange){}
+
+    default void close(){}
+}
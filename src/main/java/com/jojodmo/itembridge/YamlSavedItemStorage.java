@@ -0,0 +1,228 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Stores each saved item in its own file, saves/NAME.yml. The names of the saved items are listed once, and then
+ * kept up to date by watching the folder for changes. Changes to a file are only reported once it hasn't been written
+ * to for a moment, so that a file that's still being written isn't read. Files written by {@code save} aren't
+ * reported at all
+ */
+class YamlSavedItemStorage implements SavedItemStorage{
+
+    private static final long DEBOUNCE_MILLIS = 500;
+
+    private final File folder;
+    private final Set<String> index = ConcurrentHashMap.newKeySet();
+    // the files last written by save, so the watcher can tell them apart from changes made by someone else
+    private final Map<String, Stamp> ownWrites = new ConcurrentHashMap<>();
+    private volatile WatchService watchService;
+
+    YamlSavedItemStorage(File folder){
+        this.folder = folder;
+        if(!folder.exists() && !folder.mkdirs()){
+            Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Could not create the folder " + folder);
+        }
+        rebuildIndex();
+    }
+
+    @Override
+    public ItemStack load(@NotNull String key){
+        File file = new File(folder, key + ".yml");
+        if(!file.exists()){return null;}
+
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+        return config.getItemStack("item");
+    }
+
+    @Override
+    public boolean save(@NotNull String key, @NotNull ItemStack item, @NotNull UUID saver){
+        if(!folder.exists()){
+            if(!folder.mkdirs()){
+                return false;
+            }
+        }
+
+        String lower = key.toLowerCase();
+        File file = new File(folder, lower + ".yml");
+        Stamp stamp = new Stamp();
+        ownWrites.put(lower, stamp);
+        if(!file.exists()){
+            try{
+                if(!file.createNewFile()){
+                    ownWrites.remove(lower, stamp);
+                    return false;
+                }
+            }
+            catch(Exception ex){ex.printStackTrace();}
+        }
+
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+        config.set("key", key);
+        config.set("ItemBridgeVersion", ItemBridgePlugin.that.getDescription().getVersion());
+        config.set("saveTime", System.currentTimeMillis());
+        config.set("saveMethod", "playerCommand");
+        config.set("savedBy", saver.toString());
+
+        config.set("item", item);
+        config.set("version", 1);
+
+        try{
+            config.save(file);
+            stamp.written = stamp(file);
+        }
+        catch(Exception ex){
+            ex.printStackTrace();
+            ownWrites.remove(lower, stamp);
+            return false;
+        }
+
+        index.add(lower);
+        return true;
+    }
+
+    @Override
+    public @NotNull Collection<String> keys(){
+        return new ArrayList<>(index);
+    }
+
+    @Override
+    public boolean exists(@NotNull String key){
+        return index.contains(key);
+    }
+
+    @Override
+    public void watch(@NotNull Consumer<String> onChange){
+        if(watchService != null){return;}
+
+        WatchService service;
+        try{
+            service = FileSystems.getDefault().newWatchService();
+            folder.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        catch(IOException ex){
+            Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Could not watch " + folder + " for changes. Use /itembridge reload after editing saved items", ex);
+            return;
+        }
+
+        watchService = service;
+        Thread thread = new Thread(() -> watchLoop(service, onChange), "ItemBridge Saved Item Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close(){
+        WatchService service = watchService;
+        watchService = null;
+        if(service != null){
+            try{service.close();}
+            catch(IOException ignore){}
+        }
+    }
+
+    private void watchLoop(WatchService service, Consumer<String> onChange){
+        // the items that changed, and when their file was last written to
+        Map<String, Long> pending = new HashMap<>();
+        try{
+            while(true){
+                WatchKey key = pending.isEmpty() ? service.take() : service.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                if(key != null){
+                    for(WatchEvent<?> event : key.pollEvents()){
+                        if(event.kind() == StandardWatchEventKinds.OVERFLOW){
+                            pending.clear();
+                            rebuildIndex();
+                            onChange.accept(null);
+                            continue;
+                        }
+
+                        String name = event.context().toString();
+                        if(!name.endsWith(".yml")){continue;}
+
+                        String id = name.substring(0, name.length() - 4).toLowerCase();
+                        if(event.kind() == StandardWatchEventKinds.ENTRY_DELETE){
+                            ownWrites.remove(id);
+                            pending.remove(id);
+                            index.remove(id);
+                            onChange.accept(id);
+                        }
+                        else if(!isOwnWrite(id)){
+                            index.add(id);
+                            pending.put(id, System.nanoTime());
+                        }
+                    }
+
+                    if(!key.reset()){
+                        Bukkit.getLogger().log(Level.WARNING, "[ItemBridge] Stopped watching " + folder + " for changes, since it's no longer accessible");
+                        return;
+                    }
+                }
+
+                long quiet = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(DEBOUNCE_MILLIS);
+                Iterator<Map.Entry<String, Long>> it = pending.entrySet().iterator();
+                while(it.hasNext()){
+                    Map.Entry<String, Long> e = it.next();
+                    if(e.getValue() - quiet <= 0){
+                        it.remove();
+                        onChange.accept(e.getKey());
+                    }
+                }
+            }
+        }
+        catch(InterruptedException | ClosedWatchServiceException ignore){}
+    }
+
+    /**
+     * @return true if the file of the given item is still exactly as {@code save} left it, or is being saved right now
+     */
+    private boolean isOwnWrite(String id){
+        Stamp stamp = ownWrites.get(id);
+        if(stamp == null){return false;}
+
+        String written = stamp.written;
+        if(written == null || written.equals(stamp(new File(folder, id + ".yml")))){return true;}
+
+        // someone else changed the file since
+        ownWrites.remove(id, stamp);
+        return false;
+    }
+
+    private static String stamp(File file){
+        try{
+            return Files.getLastModifiedTime(file.toPath()).toMillis() + ":" + file.length();
+        }
+        catch(IOException ex){
+            return "";
+        }
+    }
+
+    private void rebuildIndex(){
+        Set<String> ids = new HashSet<>();
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(".yml"));
+        if(files != null){
+            for(File f : files){
+                ids.add(f.getName().substring(0, f.getName().length() - 4).toLowerCase());
+            }
+        }
+        index.retainAll(ids);
+        index.addAll(ids);
+    }
+
+    private static class Stamp{
+        // the modification time and length of the file after it was saved, or null while it's being saved
+        private volatile String written = null;
+    }
+}
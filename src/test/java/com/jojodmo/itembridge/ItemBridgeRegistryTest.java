@@ -0,0 +1,134 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Lookups never lock the registry, so they have to see either the listeners before a change or after it, and never
+ * anything in between
+ */
+public class ItemBridgeRegistryTest{
+
+    private static final int READERS = 4;
+    private static final int CHANGES = 2000;
+
+    private static ItemBridge bridge;
+    private static List<Material> materials;
+
+    @BeforeClass
+    public static void setUp(){
+        bridge = new ItemBridge(TestServer.createPlugin("RegistryTest"), "registrytest");
+        materials = new ArrayList<>();
+        for(Material m : Material.values()){
+            if(materials.size() < 17 && !m.isLegacy() && m.isItem() && !m.isAir()){
+                materials.add(m);
+            }
+        }
+        bridge.registerListener(new MaterialListener("stable", materials.get(0), false));
+    }
+
+    @Test
+    public void lookupsWhileListenersChange() throws Exception{
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(READERS);
+        ItemBridgeKey stableKey = new ItemBridgeKey("registrytest", "stable");
+
+        for(int i = 0; i < READERS; i++){
+            Thread reader = new Thread(() -> {
+                try{
+                    while(running.get() && failure.get() == null){
+                        // the stable listener is registered the whole time, so a dispatch array that's missing it
+                        // (or has a hole in it) shows up as a failed lookup
+                        assertNotNull(ItemBridge.getItemStack("registrytest", "stable"));
+                        assertEquals(stableKey, ItemBridge.getItemKey(new ItemStack(materials.get(0))));
+                        assertTrue(ItemBridge.isItemStack(new ItemStack(materials.get(0)), "registrytest", "stable"));
+
+                        for(ItemBridgeListenerStats stats : ItemBridge.getListenerStats()){
+                            assertNotNull(stats);
+                        }
+
+                        // the other listeners come and go, so any answer is fine as long as nothing throws
+                        for(int m = 1; m < materials.size(); m++){
+                            ItemBridge.getItemKey(new ItemStack(materials.get(m)));
+                            ItemBridge.getItemStack("registrytest", "churn" + m);
+                        }
+                    }
+                }
+                catch(Throwable ex){
+                    failure.compareAndSet(null, ex);
+                }
+                finally{
+                    done.countDown();
+                }
+            }, "ItemBridgeRegistryTest reader " + i);
+            reader.start();
+        }
+
+        try{
+            for(int i = 0; i < CHANGES && failure.get() == null; i++){
+                int m = 1 + i % (materials.size() - 1);
+                MaterialListener listener = new MaterialListener("churn" + m, materials.get(m), i % 2 == 0);
+                bridge.registerListener(listener);
+                if(i % 3 == 0){
+                    ItemBridge.clearItemKeyCache();
+                }
+                bridge.removeListener(listener);
+            }
+        }
+        finally{
+            running.set(false);
+        }
+
+        assertTrue("The readers didn't stop", done.await(30, TimeUnit.SECONDS));
+        if(failure.get() != null){
+            throw new AssertionError("A lookup failed while listeners were changing", failure.get());
+        }
+        assertEquals(1, ItemBridge.getListenerStats().size());
+    }
+
+    /**
+     * A listener for a single item, which it recognizes by its material
+     */
+    private static class MaterialListener implements ItemBridgeListener{
+
+        private final String name;
+        private final Material material;
+        private final boolean declareMaterial;
+
+        private MaterialListener(String name, Material material, boolean declareMaterial){
+            this.name = name;
+            this.material = material;
+            this.declareMaterial = declareMaterial;
+        }
+
+        @Override
+        public Set<Material> getItemMaterials(){
+            return declareMaterial ? EnumSet.of(material) : null;
+        }
+
+        @Override
+        public ItemStack fetchItemStack(@NotNull String item){
+            return name.equalsIgnoreCase(item) ? new ItemStack(material) : null;
+        }
+
+        @Override
+        public String getItemName(@NotNull ItemStack stack){
+            return stack.getType() == material ? name : null;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.jojodmo.itembridge;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * A save that never finished has to be cut off when the pack is opened, without losing anything saved before it,
+ * and replacing items over and over mustn't make the pack grow forever
+ */
+public class PackSavedItemStorageTest{
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File pack;
+
+    @BeforeClass
+    public static void setUpServer(){
+        TestServer.install();
+    }
+
+    @Before
+    public void setUp(){
+        pack = new File(folder.getRoot(), "saves.pack");
+    }
+
+    @Test
+    public void unfinishedSaveIsCutOff() throws IOException{
+        PackSavedItemStorage storage = open();
+        storage.append("First", item(1, 300), "saver", "test");
+        storage.append("second", item(2, 300), "saver", "test");
+        long complete = pack.length();
+        storage.append("third", item(3, 300), "saver", "test");
+
+        // the server stopped before the last few bytes of the third record were written
+        try(RandomAccessFile raf = new RandomAccessFile(pack, "rw")){
+            raf.setLength(raf.length() - 3);
+        }
+
+        PackSavedItemStorage reopened = open();
+        assertArrayEquals(item(1, 300), reopened.read("first"));
+        assertArrayEquals(item(2, 300), reopened.read("second"));
+        assertNull(reopened.read("third"));
+        assertEquals(complete, pack.length());
+
+        // what comes after the cut has to be readable again, and not hidden behind the broken record
+        reopened.append("fourth", item(4, 300), "saver", "test");
+        PackSavedItemStorage again = open();
+        assertArrayEquals(item(4, 300), again.read("fourth"));
+        assertArrayEquals(item(2, 300), again.read("second"));
+    }
+
+    @Test
+    public void corruptRecordIsCutOff() throws IOException{
+        PackSavedItemStorage storage = open();
+        storage.append("first", item(1, 300), "saver", "test");
+        storage.append("second", item(2, 300), "saver", "test");
+
+        // flip the last byte of the second item, just before its checksum
+        try(RandomAccessFile raf = new RandomAccessFile(pack, "rw")){
+            long position = raf.length() - 5;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xFF);
+        }
+
+        PackSavedItemStorage reopened = open();
+        assertArrayEquals(item(1, 300), reopened.read("first"));
+        assertNull(reopened.read("second"));
+        assertFalse(reopened.exists("second"));
+    }
+
+    @Test
+    public void replacedItemsAreCompacted() throws IOException{
+        PackSavedItemStorage storage = open();
+        storage.append("kept", item(0, 1024), "saver", "test");
+        for(int i = 1; i <= 1000; i++){
+            storage.append("replaced", item(i, 1024), "saver", "test");
+        }
+
+        // a thousand 1KB saves, but only two of them are live
+        assertTrue("The pack grew to " + pack.length() + " bytes", pack.length() < 256 * 1024);
+        assertArrayEquals(item(0, 1024), storage.read("kept"));
+        assertArrayEquals(item(1000, 1024), storage.read("replaced"));
+
+        PackSavedItemStorage reopened = open();
+        assertEquals(2, reopened.keys().size());
+        assertArrayEquals(item(0, 1024), reopened.read("kept"));
+        assertArrayEquals(item(1000, 1024), reopened.read("replaced"));
+    }
+
+    private PackSavedItemStorage open() throws IOException{
+        return new PackSavedItemStorage(pack, new File(folder.getRoot(), "saves"));
+    }
+
+    private static byte[] item(int seed, int length){
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) seed);
+        data[0] = (byte) (seed >> 8);
+        return data;
+    }
+}
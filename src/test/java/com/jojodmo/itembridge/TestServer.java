@@ -0,0 +1,67 @@
+package com.jojodmo.itembridge;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.Proxy;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Just enough of a Bukkit server for ItemBridge to run in a unit test. Anything the tests don't need throws
+ */
+class TestServer{
+
+    private static final Logger LOGGER = Logger.getLogger("ItemBridgeTest");
+    private static boolean installed = false;
+
+    static {
+        LOGGER.setLevel(Level.WARNING);
+    }
+
+    /**
+     * Install the stand-in server. Safe to call more than once
+     */
+    static synchronized void install(){
+        if(installed){return;}
+
+        // ItemStack compares metas through the item factory. Test items never have any
+        ItemFactory itemFactory = stub(ItemFactory.class, (method, args) -> "equals".equals(method) ? Objects.equals(args[0], args[1]) : null);
+        Bukkit.setServer(stub(Server.class, (method, args) -> {
+            switch(method){
+                case "getLogger": return LOGGER;
+                case "getItemFactory": return itemFactory;
+                case "isPrimaryThread": return true;
+            }
+            return null;
+        }));
+        installed = true;
+    }
+
+    static Plugin createPlugin(String name){
+        install();
+        return stub(Plugin.class, (method, args) -> "getName".equals(method) ? name : null);
+    }
+
+    private static <T> T stub(Class<T> type, BiFunction<String, Object[], Object> methods){
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if(method.getDeclaringClass() == Object.class){
+                switch(method.getName()){
+                    case "equals": return proxy == args[0];
+                    case "hashCode": return System.identityHashCode(proxy);
+                    default: return type.getSimpleName() + " stand-in";
+                }
+            }
+
+            Object result = methods.apply(method.getName(), args);
+            if(result == null){
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName() + " isn't available in tests");
+            }
+            return result;
+        }));
+    }
+}